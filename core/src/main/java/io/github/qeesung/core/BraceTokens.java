@@ -0,0 +1,569 @@
+package io.github.qeesung.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact snapshot of the brace and string tokens of one text version,
+ * stored as parallel primitive arrays, so the brace matching is a tight
+ * array walk that skips all the other tokens. The tokens are read from an
+ * abstract {@link TokenStream} by the {@link BraceTokensBuilder}, so the
+ * matching runs without the IDE.
+ * <p>
+ * The walks are on the caret move hot path and allocate nothing, the brace
+ * stack is a per-thread scratch array that only grows for deeper nesting.
+ * The visited brace tokens of the last walk are kept per thread too.
+ * <p>
+ * The bracket structure of the whole version, the partner and the parent of every
+ * brace, is built once on the first structure query and shared by all the queries.
+ */
+public class BraceTokens<T> {
+    public final static byte OTHER = 0;
+    public final static byte LBRACE = 1;
+    public final static byte RBRACE = 2;
+    public final static byte STRING = 3;
+    public final static int NON_INDEX = -1;
+    private final static ThreadLocal<WalkScratch> WALK_SCRATCH = ThreadLocal.withInitial(WalkScratch::new);
+    private final static int OBJECT_HEADER_BYTES = 16;
+    private final static int REFERENCE_BYTES = 8;
+
+    private final long modificationStamp;
+    private final int documentLength;
+    private final int lastTokenStart;
+    private final int size;
+    private final int[] starts;
+    private final int[] ends;
+    private final byte[] kinds;
+    private final short[] typeIds;
+    private final Object[] types;
+    private final boolean[][] pairTable;
+    private volatile Structure structure;
+
+    /**
+     * Constructor.
+     *
+     * @param modificationStamp text modification stamp
+     * @param documentLength text length
+     * @param lastTokenStart start offset of the last token in text, including the other tokens
+     * @param size tokens count
+     * @param starts tokens start offset
+     * @param ends tokens end offset
+     * @param kinds tokens kind
+     * @param typeIds tokens type id, index of the token types
+     * @param types token types
+     * @param pairTable is the left type id paired with the right type id
+     */
+    public BraceTokens(long modificationStamp, int documentLength, int lastTokenStart,
+                       int size, int[] starts, int[] ends, byte[] kinds, short[] typeIds,
+                       T[] types, boolean[][] pairTable) {
+        this(modificationStamp, documentLength, lastTokenStart, size, starts, ends, kinds, typeIds,
+                Arrays.asList(types), pairTable);
+    }
+
+    /**
+     * Constructor with the token types collected by the {@link BraceTokensBuilder}.
+     *
+     * @param modificationStamp text modification stamp
+     * @param documentLength text length
+     * @param lastTokenStart start offset of the last token in text, including the other tokens
+     * @param size tokens count
+     * @param starts tokens start offset
+     * @param ends tokens end offset
+     * @param kinds tokens kind
+     * @param typeIds tokens type id, index of the token types
+     * @param types token types
+     * @param pairTable is the left type id paired with the right type id
+     */
+    BraceTokens(long modificationStamp, int documentLength, int lastTokenStart,
+                int size, int[] starts, int[] ends, byte[] kinds, short[] typeIds,
+                List<T> types, boolean[][] pairTable) {
+        this.modificationStamp = modificationStamp;
+        this.documentLength = documentLength;
+        this.lastTokenStart = lastTokenStart;
+        this.size = size;
+        this.starts = starts;
+        this.ends = ends;
+        this.kinds = kinds;
+        this.typeIds = typeIds;
+        this.types = types.toArray();
+        this.pairTable = pairTable;
+    }
+
+    /**
+     * Constructor sharing the token arrays and the structure of the tokens.
+     *
+     * @param tokens brace tokens
+     */
+    protected BraceTokens(BraceTokens<T> tokens) {
+        this.modificationStamp = tokens.modificationStamp;
+        this.documentLength = tokens.documentLength;
+        this.lastTokenStart = tokens.lastTokenStart;
+        this.size = tokens.size;
+        this.starts = tokens.starts;
+        this.ends = tokens.ends;
+        this.kinds = tokens.kinds;
+        this.typeIds = tokens.typeIds;
+        this.types = tokens.types;
+        this.pairTable = tokens.pairTable;
+        this.structure = tokens.structure;
+    }
+
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+
+    public int getDocumentLength() {
+        return documentLength;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    public byte getKind(int index) {
+        return kinds[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getType(int index) {
+        return (T) types[typeIds[index]];
+    }
+
+    /**
+     * Estimate the bytes of the token arrays, the pair table and the structure if built.
+     *
+     * @return estimated bytes
+     */
+    public long estimateBytes() {
+        long bytes = OBJECT_HEADER_BYTES * 6 + starts.length * 4L + ends.length * 4L +
+                kinds.length + typeIds.length * 2L + types.length * (long) REFERENCE_BYTES;
+        for (boolean[] row : pairTable)
+            bytes += OBJECT_HEADER_BYTES + row.length;
+        Structure structure = this.structure;
+        if (structure != null)
+            bytes += OBJECT_HEADER_BYTES * 3 + structure.partners.length * 4L +
+                    structure.parents.length * 4L + structure.depths.length * 4L;
+        return bytes;
+    }
+
+    /**
+     * Check if the two tokens are the pair braces.
+     *
+     * @param leftIndex left token index
+     * @param rightIndex right token index
+     * @return is pair braces
+     */
+    public boolean isPairBraces(int leftIndex, int rightIndex) {
+        return pairTable[typeIds[leftIndex]][typeIds[rightIndex]];
+    }
+
+    /**
+     * Find the index of the token which contains the offset, the last token
+     * of document contains the offsets at or after the document end.
+     *
+     * @param offset offset
+     * @return token index, {@link #NON_INDEX} if no brace or string token contains the offset
+     */
+    public int findTokenAt(int offset) {
+        int index = findLastTokenStartAtOrBefore(caretOffset(offset));
+        return index != NON_INDEX && containsOffset(index, offset) ? index : NON_INDEX;
+    }
+
+    /**
+     * Find the gap between the brace and string tokens around the offset, the caret
+     * at any offset of one gap finds the same pairs.
+     *
+     * @param offset offset
+     * @return gap index, {@link #NON_INDEX} if the offset is in a token or at the document end
+     */
+    public int findGapAt(int offset) {
+        if (offset < 0 || offset >= documentLength)
+            return NON_INDEX;
+        int gap = findGapAfter(offset);
+        return gap > 0 && ends[gap - 1] > offset ? NON_INDEX : gap;
+    }
+
+    /**
+     * Find the gap after the last token starting at or before the offset.
+     *
+     * @param offset offset
+     * @return gap index
+     */
+    public int findGapAfter(int offset) {
+        return findLastTokenStartAtOrBefore(offset) + 1;
+    }
+
+    /**
+     * Get the gap count, the gap of index i is before the token of index i.
+     *
+     * @return gap count
+     */
+    public int gapCount() {
+        return size + 1;
+    }
+
+    public int getGapStart(int gap) {
+        return gap == 0 ? 0 : ends[gap - 1];
+    }
+
+    public int getGapEnd(int gap) {
+        return gap == size ? documentLength : starts[gap];
+    }
+
+    /**
+     * Walk left from the offset, and find the closest unmatched left brace,
+     * same as {@code BraceMatchingUtilAdapter.findLeftLParen} but not filtered by type.
+     *
+     * @param offset caret offset
+     * @param isBlockCaret is block caret
+     * @param scanLimit max brace tokens to be visited
+     * @return token index, {@link #NON_INDEX} if not found
+     */
+    public int findLeftLParen(int offset, boolean isBlockCaret, int scanLimit) {
+        int depth = 0;
+        WalkScratch scratch = WALK_SCRATCH.get();
+        int[] braceStack = scratch.braceStack;
+        int visited = 0;
+        for (int i = findLastTokenStartAtOrBefore(caretOffset(offset)); i >= 0 && visited < scanLimit; i--) {
+            byte kind = kinds[i];
+            if (kind == STRING)
+                continue;
+            visited++;
+            if (kind == LBRACE) {
+                if (!isBlockCaret && containsOffset(i, offset))
+                    continue;
+                if (depth == 0) {
+                    scratch.visited = visited;
+                    return i;
+                }
+                if (!isPairBraces(i, braceStack[--depth]))
+                    break; // unmatched braces
+            } else {
+                if (containsOffset(i, offset))
+                    continue;
+                braceStack = push(scratch, braceStack, depth++, i);
+            }
+        }
+        scratch.visited = visited;
+        return NON_INDEX;
+    }
+
+    /**
+     * Walk right from the offset, and find the closest unmatched right brace,
+     * same as {@code BraceMatchingUtilAdapter.findRightRParen} but not filtered by type.
+     *
+     * @param offset caret offset
+     * @param isBlockCaret is block caret
+     * @param scanLimit max brace tokens to be visited
+     * @return token index, {@link #NON_INDEX} if not found
+     */
+    public int findRightRParen(int offset, boolean isBlockCaret, int scanLimit) {
+        int depth = 0;
+        WalkScratch scratch = WALK_SCRATCH.get();
+        int[] braceStack = scratch.braceStack;
+        int visited = 0;
+        for (int i = findFirstTokenEndAfter(caretOffset(offset)); i < size && visited < scanLimit; i++) {
+            byte kind = kinds[i];
+            if (kind == STRING)
+                continue;
+            visited++;
+            if (kind == RBRACE) {
+                if (depth == 0) {
+                    scratch.visited = visited;
+                    return i;
+                }
+                if (!isPairBraces(braceStack[--depth], i))
+                    break; // unmatched braces
+            } else {
+                if (isBlockCaret && containsOffset(i, offset))
+                    continue;
+                braceStack = push(scratch, braceStack, depth++, i);
+            }
+        }
+        scratch.visited = visited;
+        return NON_INDEX;
+    }
+
+    /**
+     * Walk left from the offset once, and record every unmatched left brace
+     * on the way as one enclosing level, innermost first.
+     *
+     * @param offset caret offset
+     * @param isBlockCaret is block caret
+     * @param scanLimit max brace tokens to be visited
+     * @param levels token indexes of the levels to be filled
+     * @return levels count
+     */
+    public int findLeftLParens(int offset, boolean isBlockCaret, int scanLimit, int[] levels) {
+        int count = 0;
+        int depth = 0;
+        WalkScratch scratch = WALK_SCRATCH.get();
+        int[] braceStack = scratch.braceStack;
+        int visited = 0;
+        for (int i = findLastTokenStartAtOrBefore(caretOffset(offset));
+             i >= 0 && visited < scanLimit && count < levels.length; i--) {
+            byte kind = kinds[i];
+            if (kind == STRING)
+                continue;
+            visited++;
+            if (kind == LBRACE) {
+                if (!isBlockCaret && containsOffset(i, offset))
+                    continue;
+                if (depth == 0) {
+                    levels[count++] = i;
+                } else if (!isPairBraces(i, braceStack[--depth])) {
+                    break; // unmatched braces
+                }
+            } else {
+                if (containsOffset(i, offset))
+                    continue;
+                braceStack = push(scratch, braceStack, depth++, i);
+            }
+        }
+        scratch.visited = visited;
+        return count;
+    }
+
+    /**
+     * Walk right from the offset once, and record every unmatched right brace
+     * on the way as one enclosing level, innermost first.
+     *
+     * @param offset caret offset
+     * @param isBlockCaret is block caret
+     * @param scanLimit max brace tokens to be visited
+     * @param levels token indexes of the levels to be filled
+     * @return levels count
+     */
+    public int findRightRParens(int offset, boolean isBlockCaret, int scanLimit, int[] levels) {
+        int count = 0;
+        int depth = 0;
+        WalkScratch scratch = WALK_SCRATCH.get();
+        int[] braceStack = scratch.braceStack;
+        int visited = 0;
+        for (int i = findFirstTokenEndAfter(caretOffset(offset));
+             i < size && visited < scanLimit && count < levels.length; i++) {
+            byte kind = kinds[i];
+            if (kind == STRING)
+                continue;
+            visited++;
+            if (kind == RBRACE) {
+                if (depth == 0) {
+                    levels[count++] = i;
+                } else if (!isPairBraces(braceStack[--depth], i)) {
+                    break; // unmatched braces
+                }
+            } else {
+                if (isBlockCaret && containsOffset(i, offset))
+                    continue;
+                braceStack = push(scratch, braceStack, depth++, i);
+            }
+        }
+        scratch.visited = visited;
+        return count;
+    }
+
+    /**
+     * Find the index of the first token starting at or after the offset.
+     *
+     * @param offset offset
+     * @return token index, {@link #size()} if no token starts at or after the offset
+     */
+    public int findFirstTokenStartAtOrAfter(int offset) {
+        return findLastTokenStartAtOrBefore(offset - 1) + 1;
+    }
+
+    /**
+     * Find the partner of the brace token in the bracket structure.
+     *
+     * @param index brace token index
+     * @return partner token index, {@link #NON_INDEX} if the brace is unmatched or not a brace
+     */
+    public int findPartner(int index) {
+        return getStructure().partners[index];
+    }
+
+    /**
+     * Find the left brace of the innermost matched pair enclosing the offset, the
+     * pair encloses the offsets from the left brace end to the right brace start.
+     *
+     * @param offset offset
+     * @return left brace token index, {@link #NON_INDEX} if no pair encloses the offset
+     */
+    public int findEnclosingLeftBrace(int offset) {
+        int index = findLastTokenStartAtOrBefore(offset);
+        if (index == NON_INDEX)
+            return NON_INDEX;
+        Structure structure = getStructure();
+        int partner = structure.partners[index];
+        if (partner != NON_INDEX) {
+            if (kinds[index] == LBRACE && ends[index] <= offset)
+                return index;
+            if (kinds[index] == RBRACE && starts[index] == offset)
+                return partner;
+        }
+        return structure.parents[index];
+    }
+
+    /**
+     * Get the count of the matched pairs enclosing the offset.
+     *
+     * @param offset offset
+     * @return depth, 0 at the top level
+     */
+    public int getDepth(int offset) {
+        int leftIndex = findEnclosingLeftBrace(offset);
+        return leftIndex == NON_INDEX ? 0 : getStructure().depths[leftIndex] + 1;
+    }
+
+    /**
+     * Get the bracket structure, built on the first call.
+     */
+    private Structure getStructure() {
+        Structure structure = this.structure;
+        if (structure == null) {
+            // racing builders compute the same structure
+            structure = buildStructure();
+            this.structure = structure;
+        }
+        return structure;
+    }
+
+    /**
+     * Match the braces with one stack walk, a right brace not paired with the
+     * top left brace closes the nearest left brace it pairs with, and leaves the
+     * left braces above unmatched, or is unmatched if no left brace pairs with it.
+     */
+    private Structure buildStructure() {
+        int[] partners = new int[size];
+        int[] parents = new int[size];
+        int[] depths = new int[size];
+        int[] stack = new int[64];
+        int top = 0;
+        for (int i = 0; i < size; i++) {
+            partners[i] = NON_INDEX;
+            if (kinds[i] == LBRACE) {
+                if (top == stack.length)
+                    stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = i;
+            } else if (kinds[i] == RBRACE) {
+                for (int j = top - 1; j >= 0; j--) {
+                    if (isPairBraces(stack[j], i)) {
+                        partners[stack[j]] = i;
+                        partners[i] = stack[j];
+                        top = j;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // the parent is the innermost matched left brace before the token
+        // and still open, the unmatched braces are not levels, the stack
+        // is never deeper than the one of the matching walk
+        top = 0;
+        for (int i = 0; i < size; i++) {
+            int partner = partners[i];
+            if (kinds[i] == RBRACE && partner != NON_INDEX) {
+                top--;
+                parents[i] = parents[partner];
+                continue;
+            }
+            parents[i] = top == 0 ? NON_INDEX : stack[top - 1];
+            if (kinds[i] == LBRACE && partner != NON_INDEX) {
+                depths[i] = top;
+                stack[top++] = i;
+            }
+        }
+        return new Structure(partners, parents, depths);
+    }
+
+    /**
+     * Get the brace tokens visited by the last walk in the current thread.
+     *
+     * @return visited brace tokens
+     */
+    public static int getLastVisitedTokens() {
+        return WALK_SCRATCH.get().visited;
+    }
+
+    /**
+     * Map the offsets at or after the document end into the last token,
+     * same as the highlighter iterator does.
+     */
+    private int caretOffset(int offset) {
+        return offset >= documentLength ? lastTokenStart : offset;
+    }
+
+    private boolean containsOffset(int index, int offset) {
+        int caretOffset = caretOffset(offset);
+        return starts[index] <= caretOffset && caretOffset < ends[index];
+    }
+
+    private int findLastTokenStartAtOrBefore(int offset) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= offset)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return high;
+    }
+
+    private int findFirstTokenEndAfter(int offset) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] <= offset)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return low;
+    }
+
+    private static int[] push(WalkScratch scratch, int[] stack, int depth, int index) {
+        if (depth == stack.length) {
+            int[] newStack = new int[depth * 2];
+            System.arraycopy(stack, 0, newStack, 0, depth);
+            stack = newStack;
+            scratch.braceStack = newStack;
+        }
+        stack[depth] = index;
+        return stack;
+    }
+
+    /**
+     * Bracket structure of the snapshot, indexed by the token index.
+     */
+    private static class Structure {
+        private final int[] partners;
+        private final int[] parents;
+        private final int[] depths;
+
+        private Structure(int[] partners, int[] parents, int[] depths) {
+            this.partners = partners;
+            this.parents = parents;
+            this.depths = depths;
+        }
+    }
+
+    /**
+     * Per-thread scratch state of the walks.
+     */
+    private static class WalkScratch {
+        private int[] braceStack = new int[64];
+        private int visited;
+    }
+}
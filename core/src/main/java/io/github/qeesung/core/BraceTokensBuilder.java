@@ -0,0 +1,151 @@
+package io.github.qeesung.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+
+/**
+ * Build the {@link BraceTokens} from a token stream, only the brace and string
+ * tokens are recorded.
+ */
+public class BraceTokensBuilder {
+    /**
+     * Builder should not be instantiated.
+     */
+    private BraceTokensBuilder() {
+    }
+
+    /**
+     * Walk the tokens from the stream position to the end once, and record
+     * only the brace and string tokens.
+     *
+     * @param stream token stream at the first token
+     * @param textLength text length
+     * @param isPair is the left brace type paired with the right brace type
+     * @param modificationStamp text modification stamp
+     * @param <T> token type
+     * @return brace tokens
+     */
+    public static <T> BraceTokens<T> build(TokenStream<T> stream, int textLength,
+                                           BiPredicate<T, T> isPair, long modificationStamp) {
+        return build(stream, textLength,
+                (PairPredicate<T>) (leftType, leftVariant, rightType, rightVariant) ->
+                        isPair.test(leftType, rightType),
+                modificationStamp);
+    }
+
+    /**
+     * Walk the tokens from the stream position to the end once, and record
+     * only the brace and string tokens, the tokens of one type and of different
+     * variants have their own type ids.
+     *
+     * @param stream token stream at the first token
+     * @param textLength text length
+     * @param isPair is the left brace type and variant paired with the right brace type and variant
+     * @param modificationStamp text modification stamp
+     * @param <T> token type
+     * @return brace tokens
+     */
+    public static <T> BraceTokens<T> build(TokenStream<T> stream, int textLength,
+                                           PairPredicate<T> isPair, long modificationStamp) {
+        int capacity = 256;
+        int size = 0;
+        int[] starts = new int[capacity];
+        int[] ends = new int[capacity];
+        byte[] kinds = new byte[capacity];
+        short[] typeIds = new short[capacity];
+        Map<TypeKey<T>, Short> typeIdMap = new HashMap<>();
+        // the lookup key is reused, a key is created only for a new type
+        TypeKey<T> lookupKey = new TypeKey<>();
+        List<TypeKey<T>> typeKeys = new ArrayList<>();
+        int lastTokenStart = 0;
+
+        for (; !stream.atEnd(); stream.advance()) {
+            lastTokenStart = stream.getStart();
+            byte kind = stream.getKind();
+            if (kind == BraceTokens.OTHER)
+                continue;
+
+            if (size == capacity) {
+                capacity *= 2;
+                starts = grow(starts, capacity);
+                ends = grow(ends, capacity);
+                kinds = grow(kinds, capacity);
+                typeIds = grow(typeIds, capacity);
+            }
+            lookupKey.type = stream.getType();
+            lookupKey.variant = stream.getVariant();
+            Short typeId = typeIdMap.get(lookupKey);
+            if (typeId == null) {
+                TypeKey<T> typeKey = new TypeKey<>();
+                typeKey.type = lookupKey.type;
+                typeKey.variant = lookupKey.variant;
+                typeId = (short) typeKeys.size();
+                typeIdMap.put(typeKey, typeId);
+                typeKeys.add(typeKey);
+            }
+            starts[size] = lastTokenStart;
+            ends[size] = stream.getEnd();
+            kinds[size] = kind;
+            typeIds[size] = typeId;
+            size++;
+        }
+
+        int typeCount = typeKeys.size();
+        List<T> types = new ArrayList<>(typeCount);
+        for (TypeKey<T> typeKey : typeKeys)
+            types.add(typeKey.type);
+        boolean[][] pairTable = new boolean[typeCount][typeCount];
+        for (int left = 0; left < typeCount; left++) {
+            TypeKey<T> leftKey = typeKeys.get(left);
+            for (int right = 0; right < typeCount; right++) {
+                TypeKey<T> rightKey = typeKeys.get(right);
+                pairTable[left][right] = isPair.isPair(leftKey.type, leftKey.variant, rightKey.type, rightKey.variant);
+            }
+        }
+        return new BraceTokens<>(modificationStamp, textLength, lastTokenStart,
+                size, starts, ends, kinds, typeIds, types, pairTable);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static byte[] grow(byte[] array, int capacity) {
+        byte[] newArray = new byte[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static short[] grow(short[] array, int capacity) {
+        short[] newArray = new short[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    /**
+     * Token type with its variant.
+     */
+    private static class TypeKey<T> {
+        private T type;
+        private int variant;
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TypeKey))
+                return false;
+            TypeKey<?> typeKey = (TypeKey<?>) o;
+            return variant == typeKey.variant && Objects.equals(type, typeKey.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(type) * 31 + variant;
+        }
+    }
+}
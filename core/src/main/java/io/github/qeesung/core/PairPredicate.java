@@ -0,0 +1,21 @@
+package io.github.qeesung.core;
+
+/**
+ * Check if the left brace is paired with the right brace by their types and
+ * the variants of the types.
+ *
+ * @param <T> token type
+ */
+@FunctionalInterface
+public interface PairPredicate<T> {
+    /**
+     * Check if the left brace is paired with the right brace.
+     *
+     * @param leftType left brace type
+     * @param leftVariant left brace type variant
+     * @param rightType right brace type
+     * @param rightVariant right brace type variant
+     * @return is paired
+     */
+    boolean isPair(T leftType, int leftVariant, T rightType, int rightVariant);
+}
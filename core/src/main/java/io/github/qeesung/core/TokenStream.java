@@ -0,0 +1,61 @@
+package io.github.qeesung.core;
+
+/**
+ * Forward stream of the lexed tokens of one text, the tokens cover the text
+ * without gaps, and each token is classified as a brace, a string or other.
+ *
+ * @param <T> token type
+ */
+public interface TokenStream<T> {
+    /**
+     * Check if all the tokens are visited.
+     *
+     * @return is at end
+     */
+    boolean atEnd();
+
+    /**
+     * Move to the next token.
+     */
+    void advance();
+
+    /**
+     * Get the start offset of the current token.
+     *
+     * @return start offset
+     */
+    int getStart();
+
+    /**
+     * Get the end offset of the current token.
+     *
+     * @return end offset
+     */
+    int getEnd();
+
+    /**
+     * Get the kind of the current token.
+     *
+     * @return {@link BraceTokens#LBRACE}, {@link BraceTokens#RBRACE}, {@link BraceTokens#STRING}
+     * or {@link BraceTokens#OTHER}
+     */
+    byte getKind();
+
+    /**
+     * Get the type of the current token, the braces are paired by the type.
+     *
+     * @return token type
+     */
+    T getType();
+
+    /**
+     * Get the variant of the current token type, the tokens of one type and of
+     * different variants are paired apart, such as the block keywords typed by one
+     * marker type and told apart by the keyword.
+     *
+     * @return variant, 0 by default
+     */
+    default int getVariant() {
+        return 0;
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.qeesung.core.batch;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line batch analyzer, matches the braces of all the source files under
+ * a source tree in parallel without the IDE, and reports the bracket balance, the
+ * max nesting depth and the matching throughput per file as tab separated lines.
+ * <p>
+ * Usage: {@code BatchAnalyzer <source root> [extension ...]}
+ */
+public class BatchAnalyzer {
+    private static final String[] DEFAULT_EXTENSIONS = {
+            "java", "kt", "scala", "groovy", "js", "ts", "c", "h", "cc", "cpp", "hpp",
+            "cs", "go", "rs", "swift", "php", "json"
+    };
+    private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Analyzer should not be instantiated.
+     */
+    private BatchAnalyzer() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0 || !Files.isDirectory(Paths.get(args[0]))) {
+            System.err.println("Usage: BatchAnalyzer <source root> [extension ...]");
+            System.exit(2);
+        }
+        Path root = Paths.get(args[0]);
+        Set<String> extensions = new HashSet<>(args.length > 1 ?
+                Arrays.asList(args).subList(1, args.length) : Arrays.asList(DEFAULT_EXTENSIONS));
+
+        long start = System.nanoTime();
+        List<FileReport> reports = new ForkJoinPool().invoke(
+                new SourceTreeTask(root, root, extensions, MAX_FILE_SIZE));
+        long wallNanos = System.nanoTime() - start;
+        reports.sort(Comparator.comparing(FileReport::getPath));
+        print(reports, wallNanos);
+    }
+
+    private static void print(List<FileReport> reports, long wallNanos) {
+        System.out.println("file\tbalanced\tunmatched\tmax depth\tbraces\tchars" +
+                "\tbuild ms\tbuild Mchars/s\tqueries\tqueries/ms");
+        long chars = 0;
+        long braces = 0;
+        int unbalanced = 0;
+        int maxDepth = 0;
+        for (FileReport report : reports) {
+            System.out.println(String.format(Locale.ROOT, "%s\t%b\t%d\t%d\t%d\t%d\t%.3f\t%.1f\t%d\t%.1f",
+                    report.getPath(), report.isBalanced(), report.getUnmatchedBraces(), report.getMaxDepth(),
+                    report.getBraces(), report.getChars(), report.getBuildNanos() / 1e6,
+                    report.getBuildThroughput(), report.getCaretQueries(), report.getQueryThroughput()));
+            chars += report.getChars();
+            braces += report.getBraces();
+            unbalanced += report.isBalanced() ? 0 : 1;
+            maxDepth = Math.max(maxDepth, report.getMaxDepth());
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "total: %d files, %d unbalanced, max depth %d, %d braces, %d chars, %.1f ms, %.1f Mchars/s",
+                reports.size(), unbalanced, maxDepth, braces, chars, wallNanos / 1e6,
+                wallNanos == 0 ? 0 : chars * 1000.0 / wallNanos));
+    }
+}
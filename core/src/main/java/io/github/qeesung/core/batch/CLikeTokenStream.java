@@ -0,0 +1,140 @@
+package io.github.qeesung.core.batch;
+
+import io.github.qeesung.core.BraceTokens;
+import io.github.qeesung.core.TokenStream;
+
+/**
+ * Token stream of the C like source text without a real lexer, the {@code ()[]{}}
+ * braces are one char tokens typed by the char, the single or double quoted
+ * literals are string tokens, the line and block comments and the other text
+ * are other tokens. A quoted literal ends at the line end if not closed.
+ */
+public class CLikeTokenStream implements TokenStream<Character> {
+    private final CharSequence text;
+    private int start;
+    private int end;
+    private byte kind;
+
+    /**
+     * Constructor.
+     *
+     * @param text source text
+     */
+    public CLikeTokenStream(CharSequence text) {
+        this.text = text;
+        lex();
+    }
+
+    /**
+     * Check if the left brace char is paired with the right brace char.
+     *
+     * @param left left brace char
+     * @param right right brace char
+     * @return is paired
+     */
+    public static boolean isPair(Character left, Character right) {
+        return left == '(' && right == ')' || left == '[' && right == ']' || left == '{' && right == '}';
+    }
+
+    @Override
+    public boolean atEnd() {
+        return start >= text.length();
+    }
+
+    @Override
+    public void advance() {
+        start = end;
+        lex();
+    }
+
+    @Override
+    public int getStart() {
+        return start;
+    }
+
+    @Override
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public byte getKind() {
+        return kind;
+    }
+
+    @Override
+    public Character getType() {
+        return kind == BraceTokens.STRING ? '"' : text.charAt(start);
+    }
+
+    /**
+     * Lex the token at the start offset.
+     */
+    private void lex() {
+        int length = text.length();
+        if (start >= length)
+            return;
+        char c = text.charAt(start);
+        if (c == '(' || c == '[' || c == '{') {
+            kind = BraceTokens.LBRACE;
+            end = start + 1;
+        } else if (c == ')' || c == ']' || c == '}') {
+            kind = BraceTokens.RBRACE;
+            end = start + 1;
+        } else if (c == '"' || c == '\'') {
+            kind = BraceTokens.STRING;
+            end = quoteEnd(c);
+        } else if (c == '/' && start + 1 < length && text.charAt(start + 1) == '/') {
+            kind = BraceTokens.OTHER;
+            end = lineEnd(start + 2);
+        } else if (c == '/' && start + 1 < length && text.charAt(start + 1) == '*') {
+            kind = BraceTokens.OTHER;
+            end = blockCommentEnd();
+        } else {
+            kind = BraceTokens.OTHER;
+            end = start + 1;
+            while (end < length && !isSpecial(text.charAt(end)))
+                end++;
+        }
+    }
+
+    private int quoteEnd(char quote) {
+        int length = text.length();
+        for (int i = start + 1; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\\')
+                i++;
+            else if (c == quote)
+                return i + 1;
+            else if (c == '\n')
+                return i;
+        }
+        return length;
+    }
+
+    private int lineEnd(int offset) {
+        int length = text.length();
+        while (offset < length && text.charAt(offset) != '\n')
+            offset++;
+        return offset;
+    }
+
+    private int blockCommentEnd() {
+        int length = text.length();
+        for (int i = start + 2; i + 1 < length; i++) {
+            if (text.charAt(i) == '*' && text.charAt(i + 1) == '/')
+                return i + 2;
+        }
+        return length;
+    }
+
+    private static boolean isSpecial(char c) {
+        switch (c) {
+            case '(': case ')': case '[': case ']': case '{': case '}':
+            case '"': case '\'': case '/':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
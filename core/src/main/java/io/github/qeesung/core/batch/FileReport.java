@@ -0,0 +1,137 @@
+package io.github.qeesung.core.batch;
+
+import io.github.qeesung.core.BraceTokens;
+import io.github.qeesung.core.BraceTokensBuilder;
+
+/**
+ * Bracket balance, nesting and matching time of one source file.
+ */
+public class FileReport {
+    private static final int MAX_CARET_QUERIES = 1000;
+
+    private final String path;
+    private final int chars;
+    private final int braces;
+    private final int unmatchedBraces;
+    private final int maxDepth;
+    private final int caretQueries;
+    private final long buildNanos;
+    private final long queryNanos;
+
+    private FileReport(String path, int chars, int braces, int unmatchedBraces, int maxDepth,
+                       int caretQueries, long buildNanos, long queryNanos) {
+        this.path = path;
+        this.chars = chars;
+        this.braces = braces;
+        this.unmatchedBraces = unmatchedBraces;
+        this.maxDepth = maxDepth;
+        this.caretQueries = caretQueries;
+        this.buildNanos = buildNanos;
+        this.queryNanos = queryNanos;
+    }
+
+    /**
+     * Lex and match the source text, the bracket structure is built once, and the
+     * caret matching runs at up to {@value #MAX_CARET_QUERIES} gaps between the
+     * tokens spread over the text.
+     *
+     * @param path file path to be reported
+     * @param text source text
+     * @return file report
+     */
+    public static FileReport analyze(String path, CharSequence text) {
+        long buildStart = System.nanoTime();
+        BraceTokens<Character> tokens = BraceTokensBuilder.build(new CLikeTokenStream(text), text.length(),
+                CLikeTokenStream::isPair, 0);
+        int braces = 0;
+        int unmatchedBraces = 0;
+        int maxDepth = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            byte kind = tokens.getKind(i);
+            if (kind == BraceTokens.STRING)
+                continue;
+            braces++;
+            if (tokens.findPartner(i) == BraceTokens.NON_INDEX)
+                unmatchedBraces++;
+            else if (kind == BraceTokens.LBRACE)
+                maxDepth = Math.max(maxDepth, tokens.getDepth(tokens.getEnd(i)));
+        }
+
+        long queryStart = System.nanoTime();
+        int caretQueries = 0;
+        int step = Math.max(1, tokens.gapCount() / MAX_CARET_QUERIES);
+        for (int gap = 0; gap < tokens.gapCount(); gap += step) {
+            int offset = tokens.getGapStart(gap);
+            tokens.findLeftLParen(offset, false, Integer.MAX_VALUE);
+            tokens.findRightRParen(offset, false, Integer.MAX_VALUE);
+            caretQueries++;
+        }
+        long queryEnd = System.nanoTime();
+        return new FileReport(path, text.length(), braces, unmatchedBraces, maxDepth, caretQueries,
+                queryStart - buildStart, queryEnd - queryStart);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getChars() {
+        return chars;
+    }
+
+    public int getBraces() {
+        return braces;
+    }
+
+    public int getUnmatchedBraces() {
+        return unmatchedBraces;
+    }
+
+    public boolean isBalanced() {
+        return unmatchedBraces == 0;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getCaretQueries() {
+        return caretQueries;
+    }
+
+    /**
+     * Get the time to build the brace tokens and the bracket structure.
+     *
+     * @return build time in nanoseconds
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * Get the time of all the caret queries.
+     *
+     * @return query time in nanoseconds
+     */
+    public long getQueryNanos() {
+        return queryNanos;
+    }
+
+    /**
+     * Get the build throughput.
+     *
+     * @return million chars per second
+     */
+    public double getBuildThroughput() {
+        return buildNanos == 0 ? 0 : chars * 1000.0 / buildNanos;
+    }
+
+    /**
+     * Get the caret query throughput.
+     *
+     * @return caret queries per millisecond
+     */
+    public double getQueryThroughput() {
+        return queryNanos == 0 ? 0 : caretQueries * 1000000.0 / queryNanos;
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.qeesung.core.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join task analyzing one source file, or all the source files of one
+ * directory, every subdirectory and file is forked as its own task.
+ */
+public class SourceTreeTask extends RecursiveTask<List<FileReport>> {
+    private static final long serialVersionUID = 1L;
+
+    private final Path root;
+    private final Path path;
+    private final Set<String> extensions;
+    private final long maxFileSize;
+
+    /**
+     * Constructor.
+     *
+     * @param root source root, the reported paths are relative to it
+     * @param path source file or directory
+     * @param extensions source file extensions without the dot
+     * @param maxFileSize max source file size in bytes
+     */
+    public SourceTreeTask(Path root, Path path, Set<String> extensions, long maxFileSize) {
+        this.root = root;
+        this.path = path;
+        this.extensions = extensions;
+        this.maxFileSize = maxFileSize;
+    }
+
+    @Override
+    protected List<FileReport> compute() {
+        try {
+            if (!Files.isDirectory(path))
+                return Collections.singletonList(analyzeFile());
+            List<SourceTreeTask> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+                for (Path child : children) {
+                    if (isSource(child))
+                        tasks.add(new SourceTreeTask(root, child, extensions, maxFileSize));
+                }
+            }
+            List<FileReport> reports = new ArrayList<>();
+            for (SourceTreeTask task : invokeAll(tasks))
+                reports.addAll(task.join());
+            return reports;
+        } catch (IOException e) {
+            System.err.println("Skipped " + path + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private FileReport analyzeFile() throws IOException {
+        // the malformed bytes are replaced, the braces are ascii
+        String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        return FileReport.analyze(root.relativize(path).toString(), text);
+    }
+
+    private boolean isSource(Path child) throws IOException {
+        String name = child.getFileName().toString();
+        if (name.startsWith(".") || Files.isSymbolicLink(child))
+            return false;
+        if (Files.isDirectory(child))
+            return true;
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && extensions.contains(name.substring(dot + 1)) &&
+                Files.isRegularFile(child) && Files.size(child) <= maxFileSize;
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.qeesung.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of building the {@link BraceTokens} from a token stream.
+ */
+public class BraceTokensBuilderTest {
+    private static BraceTokens<String> build(ArrayTokenStream stream, int textLength) {
+        return BraceTokensBuilder.build(stream, textLength,
+                (left, right) -> left.equals("(") && right.equals(")"), 42);
+    }
+
+    @Test
+    public void recordsOnlyTheBraceAndStringTokens() {
+        ArrayTokenStream stream = new ArrayTokenStream()
+                .add(1, BraceTokens.OTHER, "a")
+                .add(1, BraceTokens.LBRACE, "(")
+                .add(3, BraceTokens.STRING, "\"")
+                .add(1, BraceTokens.RBRACE, ")")
+                .add(2, BraceTokens.OTHER, "b");
+        BraceTokens<String> tokens = build(stream, 8);
+
+        assertEquals(3, tokens.size());
+        assertEquals(BraceTokens.LBRACE, tokens.getKind(0));
+        assertEquals(BraceTokens.STRING, tokens.getKind(1));
+        assertEquals(BraceTokens.RBRACE, tokens.getKind(2));
+        assertEquals(1, tokens.getStart(0));
+        assertEquals(2, tokens.getEnd(0));
+        assertEquals(2, tokens.getStart(1));
+        assertEquals(5, tokens.getEnd(1));
+        assertEquals(5, tokens.getStart(2));
+        assertEquals("(", tokens.getType(0));
+        assertEquals("\"", tokens.getType(1));
+        assertEquals(8, tokens.getDocumentLength());
+        assertEquals(42, tokens.getModificationStamp());
+        // the document end is in the last token, which is not recorded
+        assertEquals(BraceTokens.NON_INDEX, tokens.findTokenAt(8));
+    }
+
+    @Test
+    public void buildsThePairTableFromThePredicate() {
+        ArrayTokenStream stream = new ArrayTokenStream()
+                .add(1, BraceTokens.LBRACE, "(")
+                .add(1, BraceTokens.LBRACE, "[")
+                .add(1, BraceTokens.RBRACE, ")")
+                .add(1, BraceTokens.RBRACE, "]");
+        BraceTokens<String> tokens = build(stream, 4);
+        assertTrue(tokens.isPairBraces(0, 2));
+        assertFalse(tokens.isPairBraces(1, 3));
+        assertFalse(tokens.isPairBraces(1, 2));
+    }
+
+    @Test
+    public void sharesOneTypeObjectPerType() {
+        String type = "(";
+        ArrayTokenStream stream = new ArrayTokenStream()
+                .add(1, BraceTokens.LBRACE, type)
+                .add(1, BraceTokens.LBRACE, new String("("));
+        BraceTokens<String> tokens = build(stream, 2);
+        assertSame(type, tokens.getType(0));
+        assertSame(type, tokens.getType(1));
+    }
+
+    @Test
+    public void pairsTheVariantsOfOneTypeApart() {
+        // do ( done fi: the keywords are typed by one marker type per side
+        ArrayTokenStream stream = new ArrayTokenStream()
+                .add(2, BraceTokens.LBRACE, "kw(", 1)
+                .add(1, BraceTokens.LBRACE, "(")
+                .add(4, BraceTokens.RBRACE, "kw)", 2)
+                .add(2, BraceTokens.RBRACE, "kw)", 3);
+        BraceTokens<String> tokens = BraceTokensBuilder.build(stream, 9,
+                (leftType, leftVariant, rightType, rightVariant) -> leftType.equals("kw(") &&
+                        rightType.equals("kw)") && leftVariant == 1 && rightVariant == 2, 0);
+        assertEquals("kw)", tokens.getType(2));
+        assertEquals("kw)", tokens.getType(3));
+        assertTrue(tokens.isPairBraces(0, 2));
+        assertFalse(tokens.isPairBraces(0, 3));
+        assertEquals(BraceTokens.NON_INDEX, tokens.findPartner(1));
+    }
+
+    @Test
+    public void growsPastTheInitialCapacity() {
+        ArrayTokenStream stream = new ArrayTokenStream();
+        for (int i = 0; i < 1000; i++) {
+            stream.add(1, BraceTokens.LBRACE, "(");
+            stream.add(1, BraceTokens.RBRACE, ")");
+        }
+        BraceTokens<String> tokens = build(stream, 2000);
+        assertEquals(2000, tokens.size());
+        assertEquals(1999, tokens.getStart(1999));
+        assertEquals(1998, tokens.findPartner(1999));
+    }
+
+    @Test
+    public void buildsTheEmptyText() {
+        BraceTokens<String> tokens = build(new ArrayTokenStream(), 0);
+        assertEquals(0, tokens.size());
+        assertEquals(1, tokens.gapCount());
+        assertEquals(BraceTokens.NON_INDEX, tokens.findLeftLParen(0, false, Integer.MAX_VALUE));
+        assertEquals(BraceTokens.NON_INDEX, tokens.findRightRParen(0, true, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Token stream over the tokens added one after another.
+     */
+    private static class ArrayTokenStream implements TokenStream<String> {
+        private final List<Object[]> tokens = new ArrayList<>();
+        private int index;
+        private int start;
+
+        private ArrayTokenStream add(int length, byte kind, String type) {
+            return add(length, kind, type, 0);
+        }
+
+        private ArrayTokenStream add(int length, byte kind, String type, int variant) {
+            tokens.add(new Object[]{length, kind, type, variant});
+            return this;
+        }
+
+        @Override
+        public boolean atEnd() {
+            return index >= tokens.size();
+        }
+
+        @Override
+        public void advance() {
+            start = getEnd();
+            index++;
+        }
+
+        @Override
+        public int getStart() {
+            return start;
+        }
+
+        @Override
+        public int getEnd() {
+            return start + (Integer) tokens.get(index)[0];
+        }
+
+        @Override
+        public byte getKind() {
+            return (Byte) tokens.get(index)[1];
+        }
+
+        @Override
+        public String getType() {
+            return (String) tokens.get(index)[2];
+        }
+
+        @Override
+        public int getVariant() {
+            return (Integer) tokens.get(index)[3];
+        }
+    }
+}
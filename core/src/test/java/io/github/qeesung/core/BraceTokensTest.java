@@ -0,0 +1,156 @@
+package io.github.qeesung.core;
+
+import io.github.qeesung.core.batch.CLikeTokenStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the brace walks and the bracket structure of {@link BraceTokens}.
+ */
+public class BraceTokensTest {
+    private static BraceTokens<Character> build(String text) {
+        return BraceTokensBuilder.build(new CLikeTokenStream(text), text.length(), CLikeTokenStream::isPair, 0);
+    }
+
+    private static int start(BraceTokens<Character> tokens, int index) {
+        return index == BraceTokens.NON_INDEX ? -1 : tokens.getStart(index);
+    }
+
+    @Test
+    public void findsThePairAroundTheLineCaret() {
+        BraceTokens<Character> tokens = build("a(b)c");
+        assertEquals(1, start(tokens, tokens.findLeftLParen(2, false, Integer.MAX_VALUE)));
+        assertEquals(3, start(tokens, tokens.findRightRParen(2, false, Integer.MAX_VALUE)));
+        // the caret before the right brace is still inside the pair
+        assertEquals(1, start(tokens, tokens.findLeftLParen(3, false, Integer.MAX_VALUE)));
+        assertEquals(3, start(tokens, tokens.findRightRParen(3, false, Integer.MAX_VALUE)));
+        // the caret after the right brace is outside
+        assertEquals(-1, start(tokens, tokens.findLeftLParen(4, false, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void blockCaretOnTheLeftBraceFindsItsPair() {
+        BraceTokens<Character> tokens = build("a(b)c");
+        assertEquals(-1, start(tokens, tokens.findLeftLParen(1, false, Integer.MAX_VALUE)));
+        assertEquals(-1, start(tokens, tokens.findRightRParen(1, false, Integer.MAX_VALUE)));
+        assertEquals(1, start(tokens, tokens.findLeftLParen(1, true, Integer.MAX_VALUE)));
+        assertEquals(3, start(tokens, tokens.findRightRParen(1, true, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void skipsTheBracesInStrings() {
+        BraceTokens<Character> tokens = build("(\")\")");
+        assertEquals(0, start(tokens, tokens.findLeftLParen(2, false, Integer.MAX_VALUE)));
+        assertEquals(4, start(tokens, tokens.findRightRParen(2, false, Integer.MAX_VALUE)));
+        int string = tokens.findTokenAt(2);
+        assertEquals(BraceTokens.STRING, tokens.getKind(string));
+        assertEquals(1, tokens.getStart(string));
+        assertEquals(4, tokens.getEnd(string));
+    }
+
+    @Test
+    public void stopsAtTheMismatchedBrace() {
+        BraceTokens<Character> tokens = build("(a]b)");
+        // the closest braces are found regardless of the type
+        int left = tokens.findLeftLParen(1, false, Integer.MAX_VALUE);
+        int right = tokens.findRightRParen(1, false, Integer.MAX_VALUE);
+        assertEquals(0, start(tokens, left));
+        assertEquals(2, start(tokens, right));
+        assertFalse(tokens.isPairBraces(left, right));
+        // the walk over the mismatched braces stops
+        assertEquals(-1, start(tokens, tokens.findLeftLParen(3, false, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void findsTheEnclosingLevelsInOneWalk() {
+        BraceTokens<Character> tokens = build("{a(b[c]d)e}");
+        int[] leftLevels = new int[4];
+        int[] rightLevels = new int[4];
+        assertEquals(3, tokens.findLeftLParens(5, false, Integer.MAX_VALUE, leftLevels));
+        assertEquals(3, tokens.findRightRParens(5, false, Integer.MAX_VALUE, rightLevels));
+        assertArrayEquals(new int[]{4, 2, 0}, new int[]{
+                tokens.getStart(leftLevels[0]), tokens.getStart(leftLevels[1]), tokens.getStart(leftLevels[2])});
+        assertArrayEquals(new int[]{6, 8, 10}, new int[]{
+                tokens.getStart(rightLevels[0]), tokens.getStart(rightLevels[1]), tokens.getStart(rightLevels[2])});
+
+        int[] twoLevels = new int[2];
+        assertEquals(2, tokens.findLeftLParens(5, false, Integer.MAX_VALUE, twoLevels));
+        assertEquals(2, tokens.getStart(twoLevels[1]));
+    }
+
+    @Test
+    public void stopsAtTheScanLimit() {
+        BraceTokens<Character> tokens = build("(a()()b)");
+        assertEquals(-1, start(tokens, tokens.findLeftLParen(6, false, 4)));
+        assertEquals(4, BraceTokens.getLastVisitedTokens());
+        assertEquals(0, start(tokens, tokens.findLeftLParen(6, false, 5)));
+        assertEquals(5, BraceTokens.getLastVisitedTokens());
+    }
+
+    @Test
+    public void mapsTheDocumentEndIntoTheLastToken() {
+        BraceTokens<Character> tokens = build("(a)");
+        assertEquals(2, start(tokens, tokens.findTokenAt(3)));
+        assertEquals(0, start(tokens, tokens.findLeftLParen(3, false, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void deepNestingGrowsTheBraceStack() {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < 1000; i++)
+            text.append("[]");
+        text.append("x)");
+        BraceTokens<Character> tokens = build(text.toString());
+        int caret = text.length() - 2;
+        assertEquals(0, start(tokens, tokens.findLeftLParen(caret, false, Integer.MAX_VALUE)));
+        assertEquals(caret + 1, start(tokens, tokens.findRightRParen(0, true, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void matchesThePartnersInTheStructure() {
+        BraceTokens<Character> tokens = build("{(a}");
+        assertEquals(2, tokens.findPartner(0));
+        assertEquals(0, tokens.findPartner(2));
+        assertEquals(BraceTokens.NON_INDEX, tokens.findPartner(1));
+    }
+
+    @Test
+    public void countsTheEnclosingPairs() {
+        BraceTokens<Character> tokens = build("{a(b)c}");
+        assertEquals(0, tokens.getDepth(0));
+        assertEquals(1, tokens.getDepth(1));
+        assertEquals(2, tokens.getDepth(3));
+        assertEquals(2, tokens.getDepth(4));
+        assertEquals(1, tokens.getDepth(5));
+        assertEquals(0, tokens.getDepth(7));
+        assertEquals(2, tokens.getStart(tokens.findEnclosingLeftBrace(3)));
+        assertEquals(BraceTokens.NON_INDEX, tokens.findEnclosingLeftBrace(0));
+    }
+
+    @Test
+    public void splitsTheTextIntoGaps() {
+        BraceTokens<Character> tokens = build("a(b)c");
+        assertEquals(3, tokens.gapCount());
+        assertEquals(0, tokens.findGapAt(0));
+        assertEquals(BraceTokens.NON_INDEX, tokens.findGapAt(1));
+        assertEquals(1, tokens.findGapAt(2));
+        assertEquals(2, tokens.findGapAt(4));
+        assertEquals(BraceTokens.NON_INDEX, tokens.findGapAt(5));
+        assertEquals(2, tokens.getGapStart(1));
+        assertEquals(3, tokens.getGapEnd(1));
+        assertEquals(5, tokens.getGapEnd(2));
+    }
+
+    @Test
+    public void estimatesTheStructureOnceBuilt() {
+        BraceTokens<Character> tokens = build("{a(b)c}");
+        long bytes = tokens.estimateBytes();
+        assertTrue(bytes > 0);
+        tokens.findPartner(0);
+        assertTrue(tokens.estimateBytes() > bytes);
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.qeesung.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.ScrollType;
+import io.github.qeesung.brace.Brace;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.component.HighlightBracketPairApplicationComponent;
+import io.github.qeesung.component.HighlightEditorComponent;
+import io.github.qeesung.highlighter.BraceHighlighter;
+import io.github.qeesung.util.Pair;
+
+import java.util.List;
+
+/**
+ * Editor action on the brace pairs around the caret, served from the pairs
+ * already highlighted for the caret, so the action does not scan the document.
+ */
+public abstract class BracePairAction extends AnAction {
+    @Override
+    public void update(AnActionEvent e) {
+        Editor editor = e.getData(CommonDataKeys.EDITOR);
+        e.getPresentation().setEnabled(editor != null &&
+                HighlightBracketPairApplicationComponent.getInstance().getEditorComponent(editor) != null);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Editor editor = e.getData(CommonDataKeys.EDITOR);
+        if (editor == null)
+            return;
+        HighlightEditorComponent editorComponent =
+                HighlightBracketPairApplicationComponent.getInstance().getEditorComponent(editor);
+        if (editorComponent == null)
+            return;
+        Pair<BraceHighlighter, List<BracePair>> bracePairs = editorComponent.getCaretBracePairs();
+        if (bracePairs == null || bracePairs.getRight().isEmpty() || !isFound(bracePairs.getRight().get(0)))
+            return;
+        perform(editor, bracePairs.getLeft(), bracePairs.getRight());
+    }
+
+    /**
+     * Perform the action on the found pairs.
+     *
+     * @param editor editor
+     * @param highlighter brace highlighter of the pairs
+     * @param bracePairs found brace pairs around the caret, innermost first
+     */
+    protected abstract void perform(Editor editor, BraceHighlighter highlighter, List<BracePair> bracePairs);
+
+    /**
+     * Move the caret to the offset and scroll to it.
+     *
+     * @param editor editor
+     * @param offset new caret offset
+     */
+    protected static void moveCaret(Editor editor, int offset) {
+        editor.getSelectionModel().removeSelection();
+        editor.getCaretModel().moveToOffset(offset);
+        editor.getScrollingModel().scrollToCaret(ScrollType.MAKE_VISIBLE);
+    }
+
+    /**
+     * Check if both braces of the pair are found.
+     *
+     * @param bracePair brace pair
+     * @return is found
+     */
+    protected static boolean isFound(BracePair bracePair) {
+        return bracePair.getLeftBrace().getOffset() != BraceHighlighter.NON_OFFSET &&
+                bracePair.getRightBrace().getOffset() != BraceHighlighter.NON_OFFSET;
+    }
+
+    /**
+     * Get the end offset of the brace.
+     *
+     * @param brace brace
+     * @return end offset
+     */
+    protected static int getEnd(Brace brace) {
+        return brace.getOffset() + brace.getText().length();
+    }
+}
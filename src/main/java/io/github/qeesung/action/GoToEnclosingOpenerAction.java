@@ -0,0 +1,30 @@
+package io.github.qeesung.action;
+
+import com.intellij.openapi.editor.Editor;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.highlighter.BraceHighlighter;
+
+import java.util.List;
+
+/**
+ * Move the caret to the left brace of the innermost pair, or to the left brace
+ * of the parent pair if the caret is already at it, so the repeated action
+ * climbs the enclosing pairs.
+ */
+public class GoToEnclosingOpenerAction extends BracePairAction {
+    @Override
+    protected void perform(Editor editor, BraceHighlighter highlighter, List<BracePair> bracePairs) {
+        int offset = editor.getCaretModel().getOffset();
+        int leftOffset = bracePairs.get(0).getLeftBrace().getOffset();
+        if (leftOffset != offset) {
+            moveCaret(editor, leftOffset);
+            return;
+        }
+
+        // the parent is highlighted as the next level, or found in the bracket structure
+        BracePair parentPair = bracePairs.size() > 1 ?
+                bracePairs.get(1) : highlighter.findEnclosingBracePair(leftOffset);
+        if (isFound(parentPair))
+            moveCaret(editor, parentPair.getLeftBrace().getOffset());
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.qeesung.action;
+
+import com.intellij.openapi.editor.Editor;
+import io.github.qeesung.brace.Brace;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.highlighter.BraceHighlighter;
+
+import java.util.List;
+
+/**
+ * Move the caret to the partner of the highlighted brace, to the right brace
+ * if the caret is at the left brace, otherwise to the left brace.
+ */
+public class JumpToPartnerAction extends BracePairAction {
+    @Override
+    protected void perform(Editor editor, BraceHighlighter highlighter, List<BracePair> bracePairs) {
+        Brace leftBrace = bracePairs.get(0).getLeftBrace();
+        Brace rightBrace = bracePairs.get(0).getRightBrace();
+        int offset = editor.getCaretModel().getOffset();
+        boolean atLeftBrace = leftBrace.getOffset() <= offset && offset <= getEnd(leftBrace);
+        moveCaret(editor, atLeftBrace ? rightBrace.getOffset() : leftBrace.getOffset());
+    }
+}
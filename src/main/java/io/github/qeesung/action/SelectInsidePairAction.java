@@ -0,0 +1,21 @@
+package io.github.qeesung.action;
+
+import com.intellij.openapi.editor.Editor;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.highlighter.BraceHighlighter;
+
+import java.util.List;
+
+/**
+ * Select the contents of the innermost pair without the braces.
+ */
+public class SelectInsidePairAction extends BracePairAction {
+    @Override
+    protected void perform(Editor editor, BraceHighlighter highlighter, List<BracePair> bracePairs) {
+        BracePair bracePair = bracePairs.get(0);
+        int start = getEnd(bracePair.getLeftBrace());
+        int end = bracePair.getRightBrace().getOffset();
+        if (start <= end)
+            editor.getSelectionModel().setSelection(start, end);
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.qeesung.action;
+
+import com.intellij.openapi.editor.Editor;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.highlighter.BraceHighlighter;
+
+import java.util.List;
+
+/**
+ * Select the innermost pair with the braces.
+ */
+public class SelectPairAction extends BracePairAction {
+    @Override
+    protected void perform(Editor editor, BraceHighlighter highlighter, List<BracePair> bracePairs) {
+        BracePair bracePair = bracePairs.get(0);
+        editor.getSelectionModel().setSelection(bracePair.getLeftBrace().getOffset(),
+                getEnd(bracePair.getRightBrace()));
+    }
+}
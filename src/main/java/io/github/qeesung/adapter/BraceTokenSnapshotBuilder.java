@@ -0,0 +1,223 @@
+package io.github.qeesung.adapter;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.EditorHighlighter;
+import com.intellij.openapi.editor.highlighter.EditorHighlighterFactory;
+import com.intellij.openapi.editor.highlighter.HighlighterIterator;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import io.github.qeesung.brace.BraceTokenSnapshot;
+import io.github.qeesung.brace.KeywordPairs;
+import io.github.qeesung.core.BraceTokensBuilder;
+import io.github.qeesung.util.MemoryEstimate;
+
+import java.lang.ref.SoftReference;
+
+import static com.intellij.codeInsight.highlighting.BraceMatchingUtil.isPairBraces;
+
+/**
+ * Build the {@link BraceTokenSnapshot} from the editor highlighter lazily,
+ * and cache it in the editor, or in the {@link DocumentMatchingState} shared by
+ * the editors of the document, until the document is changed.
+ */
+public class BraceTokenSnapshotBuilder {
+    private static final Key<CachedSnapshot> BRACE_TOKEN_SNAPSHOT =
+            Key.create("io.github.qeesung.BraceTokenSnapshot");
+    private static final Key<CachedSnapshot> SHARED_BRACE_TOKEN_SNAPSHOT =
+            Key.create("io.github.qeesung.SharedBraceTokenSnapshot");
+    private static final Key<SoftReference<CachedSnapshot>> DETACHED_BRACE_TOKEN_SNAPSHOT =
+            Key.create("io.github.qeesung.DetachedBraceTokenSnapshot");
+
+    /**
+     * Builder should not be instantiated.
+     */
+    private BraceTokenSnapshotBuilder() {
+    }
+
+    /**
+     * Get the cached snapshot of the current document version, or build it.
+     *
+     * @param editor editor
+     * @param fileText file text
+     * @param fileType file type
+     * @return snapshot
+     */
+    public static BraceTokenSnapshot getSnapshot(Editor editor, CharSequence fileText, FileType fileType) {
+        return getSnapshot(editor, fileText, fileType, KeywordPairs.EMPTY, false);
+    }
+
+    /**
+     * Get the cached snapshot of the current document version, or build it. The shared
+     * snapshot is cached in the document matching state, so the editors of the same
+     * document and file type, such as the diff side and the file editor, build it once.
+     *
+     * @param editor editor
+     * @param fileText file text
+     * @param fileType file type
+     * @param keywordPairs block keyword pairs of the language
+     * @param shareWithDocument cache the snapshot in the document
+     * @return snapshot
+     */
+    public static BraceTokenSnapshot getSnapshot(Editor editor, CharSequence fileText, FileType fileType,
+                                                 KeywordPairs keywordPairs, boolean shareWithDocument) {
+        Document document = editor.getDocument();
+        long modificationStamp = document.getModificationStamp();
+        DocumentMatchingState documentState = shareWithDocument ? DocumentMatchingState.getInstance(document) : null;
+        CachedSnapshot cachedSnapshot = documentState != null ?
+                documentState.getValue(SHARED_BRACE_TOKEN_SNAPSHOT) : editor.getUserData(BRACE_TOKEN_SNAPSHOT);
+        if (cachedSnapshot != null && cachedSnapshot.isUpToDate(fileType, keywordPairs, modificationStamp, fileText))
+            return cachedSnapshot.snapshot;
+
+        BraceTokenSnapshot snapshot = build(((EditorEx) editor).getHighlighter().createIterator(0),
+                fileText, fileType, keywordPairs, modificationStamp);
+        cachedSnapshot = new CachedSnapshot(fileType, keywordPairs, snapshot);
+        if (documentState != null)
+            documentState.putValue(SHARED_BRACE_TOKEN_SNAPSHOT, cachedSnapshot);
+        else
+            editor.putUserData(BRACE_TOKEN_SNAPSHOT, cachedSnapshot);
+        return snapshot;
+    }
+
+    /**
+     * Get the cached snapshot of the document not opened in any editor, or build it
+     * with a new editor highlighter of the file. No editor releases this snapshot,
+     * so the document references it softly.
+     *
+     * @param document document
+     * @param psiFile file of the document
+     * @param keywordPairs block keyword pairs of the language
+     * @return snapshot
+     */
+    public static BraceTokenSnapshot getDetachedSnapshot(Document document, PsiFile psiFile,
+                                                         KeywordPairs keywordPairs) {
+        CharSequence fileText = document.getImmutableCharSequence();
+        FileType fileType = psiFile.getFileType();
+        long modificationStamp = document.getModificationStamp();
+        SoftReference<CachedSnapshot> reference = document.getUserData(DETACHED_BRACE_TOKEN_SNAPSHOT);
+        CachedSnapshot cachedSnapshot = reference == null ? null : reference.get();
+        if (cachedSnapshot != null && cachedSnapshot.isUpToDate(fileType, keywordPairs, modificationStamp, fileText))
+            return cachedSnapshot.snapshot;
+
+        Project project = psiFile.getProject();
+        VirtualFile file = psiFile.getVirtualFile();
+        EditorHighlighter editorHighlighter = file != null ?
+                EditorHighlighterFactory.getInstance().createEditorHighlighter(project, file) :
+                EditorHighlighterFactory.getInstance().createEditorHighlighter(project, fileType);
+        editorHighlighter.setText(fileText);
+        BraceTokenSnapshot snapshot = build(editorHighlighter.createIterator(0),
+                fileText, fileType, keywordPairs, modificationStamp);
+        document.putUserData(DETACHED_BRACE_TOKEN_SNAPSHOT,
+                new SoftReference<>(new CachedSnapshot(fileType, keywordPairs, snapshot)));
+        return snapshot;
+    }
+
+    /**
+     * Walk all the tokens once, and record only the brace and string tokens.
+     *
+     * @param editorHighlighter editor highlighter
+     * @param fileText file text
+     * @param fileType file type
+     * @param modificationStamp document modification stamp
+     * @return snapshot
+     */
+    public static BraceTokenSnapshot build(EditorHighlighter editorHighlighter,
+                                           CharSequence fileText,
+                                           FileType fileType,
+                                           long modificationStamp) {
+        return build(editorHighlighter.createIterator(0), fileText, fileType, modificationStamp);
+    }
+
+    /**
+     * Walk the tokens from the iterator position to the end once, and record
+     * only the brace and string tokens.
+     *
+     * @param iterator highlighter iterator at the first token
+     * @param fileText file text
+     * @param fileType file type
+     * @param modificationStamp document modification stamp
+     * @return snapshot
+     */
+    public static BraceTokenSnapshot build(HighlighterIterator iterator,
+                                           CharSequence fileText,
+                                           FileType fileType,
+                                           long modificationStamp) {
+        return build(iterator, fileText, fileType, KeywordPairs.EMPTY, modificationStamp);
+    }
+
+    /**
+     * Walk the tokens from the iterator position to the end once, and record
+     * only the brace, block keyword and string tokens.
+     *
+     * @param iterator highlighter iterator at the first token
+     * @param fileText file text
+     * @param fileType file type
+     * @param keywordPairs block keyword pairs, the keyword tokens are typed by the keyword marker types
+     * @param modificationStamp document modification stamp
+     * @return snapshot
+     */
+    public static BraceTokenSnapshot build(HighlighterIterator iterator,
+                                           CharSequence fileText,
+                                           FileType fileType,
+                                           KeywordPairs keywordPairs,
+                                           long modificationStamp) {
+        return new BraceTokenSnapshot(BraceTokensBuilder.build(
+                new HighlighterTokenStream(iterator, fileText, fileType, keywordPairs), fileText.length(),
+                (leftType, leftVariant, rightType, rightVariant) -> leftVariant == 0 && rightVariant == 0 ?
+                        isPairBraces(leftType, rightType, fileType) :
+                        leftVariant != 0 && rightVariant != 0 && keywordPairs.isPair(leftVariant - 1, rightVariant - 1),
+                modificationStamp));
+    }
+
+    /**
+     * Estimate the bytes of the snapshot cached in the editor, the snapshot shared
+     * with the document is estimated by the {@link DocumentMatchingState}.
+     *
+     * @param editor editor
+     * @return estimated bytes, 0 if no snapshot is cached in the editor
+     */
+    public static long estimateEditorBytes(Editor editor) {
+        CachedSnapshot cachedSnapshot = editor.getUserData(BRACE_TOKEN_SNAPSHOT);
+        return cachedSnapshot == null ? 0 : cachedSnapshot.estimateBytes();
+    }
+
+    /**
+     * Release the snapshot cached in the editor, it is built again on the next query.
+     *
+     * @param editor editor
+     */
+    public static void releaseEditorSnapshot(Editor editor) {
+        editor.putUserData(BRACE_TOKEN_SNAPSHOT, null);
+    }
+
+    /**
+     * Cached snapshot with the file type and the keyword pairs it is built for.
+     */
+    private static class CachedSnapshot implements MemoryEstimate {
+        private final FileType fileType;
+        private final KeywordPairs keywordPairs;
+        private final BraceTokenSnapshot snapshot;
+
+        private CachedSnapshot(FileType fileType, KeywordPairs keywordPairs, BraceTokenSnapshot snapshot) {
+            this.fileType = fileType;
+            this.keywordPairs = keywordPairs;
+            this.snapshot = snapshot;
+        }
+
+        private boolean isUpToDate(FileType fileType, KeywordPairs keywordPairs,
+                                   long modificationStamp, CharSequence fileText) {
+            return this.fileType == fileType && this.keywordPairs == keywordPairs &&
+                    snapshot.getModificationStamp() == modificationStamp &&
+                    snapshot.getDocumentLength() == fileText.length();
+        }
+
+        @Override
+        public long estimateBytes() {
+            return OBJECT_HEADER_BYTES + snapshot.estimateBytes();
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package io.github.qeesung.adapter;
+
+import io.github.qeesung.brace.BraceTokenSnapshot;
+import io.github.qeesung.brace.KeywordPairs;
+
+/**
+ * Brace matcher for the languages without a {@code PairedBraceMatcher}, matches
+ * the {@code ()[]{}} braces directly on the document text. The text is read in
+ * chunks, and the scan stops at the max distance from the caret. If quote aware,
+ * the braces in the single or double quoted segment of the line are ignored, the
+ * text is walked line by line and a long line is still read in chunks.
+ * <p>
+ * Every char is treated as one token, so the block caret and line caret behave
+ * the same as {@link BraceMatchingUtilAdapter}. The block keywords are matched as
+ * the whole words out of the quotes, and are located by their first char.
+ */
+public class CharSequenceBraceMatcher {
+    public static final String BRACES = "()[]{}";
+    public static final int NON_OFFSET = -1;
+    /**
+     * Brace index of the first keyword, the keyword braces follow the {@link #BRACES}.
+     */
+    public static final int KEYWORD_BRACE = BRACES.length();
+    // the brace indexes are stored in bytes
+    private static final int MAX_KEYWORDS = Byte.MAX_VALUE - KEYWORD_BRACE;
+    private static final int CHUNK_SIZE = 4096;
+
+    private final int maxDistance;
+    private final boolean quoteAware;
+    private final KeywordPairs keywordPairs;
+    private final boolean hasKeywords;
+    private final char[] chunk = new char[CHUNK_SIZE];
+    private int[] braceStack = new int[16];
+    private int[] lineBraces = new int[64];
+    private byte[] lineBraceIndexes = new byte[64];
+    private int lineBraceCount;
+    private int lastScannedChars;
+    private final int[] singleLevel = new int[1];
+
+    /**
+     * Constructor.
+     *
+     * @param maxDistance max chars to be scanned from the caret in one direction
+     * @param quoteAware ignore the braces in quotes
+     */
+    public CharSequenceBraceMatcher(int maxDistance, boolean quoteAware) {
+        this(maxDistance, quoteAware, KeywordPairs.EMPTY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxDistance max chars to be scanned from the caret in one direction
+     * @param quoteAware ignore the braces in quotes
+     * @param keywordPairs block keyword pairs matched with the braces
+     */
+    public CharSequenceBraceMatcher(int maxDistance, boolean quoteAware, KeywordPairs keywordPairs) {
+        this.maxDistance = maxDistance;
+        this.quoteAware = quoteAware;
+        this.keywordPairs = keywordPairs;
+        this.hasKeywords = !keywordPairs.isEmpty();
+    }
+
+    /**
+     * Check if the matcher is created with the settings, the matcher and its
+     * buffers are then reused instead of created again.
+     *
+     * @param maxDistance max chars to be scanned from the caret in one direction
+     * @param quoteAware ignore the braces in quotes
+     * @param keywordPairs block keyword pairs matched with the braces
+     * @return is created with the settings
+     */
+    public boolean hasSettings(int maxDistance, boolean quoteAware, KeywordPairs keywordPairs) {
+        return this.maxDistance == maxDistance && this.quoteAware == quoteAware && this.keywordPairs == keywordPairs;
+    }
+
+    /**
+     * Get the brace index in {@link #BRACES}, the left brace is even and
+     * the right brace is odd.
+     *
+     * @param c char
+     * @return brace index, -1 if not a brace
+     */
+    public static int braceIndex(char c) {
+        switch (c) {
+            case '(': return 0;
+            case ')': return 1;
+            case '[': return 2;
+            case ']': return 3;
+            case '{': return 4;
+            case '}': return 5;
+            default: return -1;
+        }
+    }
+
+    /**
+     * Get the brace index of the brace char or the block keyword at the offset.
+     *
+     * @param text document text
+     * @param offset offset of the brace char or of the first keyword char
+     * @return brace index, the keyword indexes start at {@link #KEYWORD_BRACE}, -1 if not a brace
+     */
+    public int braceAt(CharSequence text, int offset) {
+        int brace = braceIndex(text.charAt(offset));
+        if (brace >= 0 || !hasKeywords || isWordChar(charBefore(text, offset)))
+            return brace;
+        int keyword = findKeyword(text, offset);
+        return keyword == BraceTokenSnapshot.NON_INDEX ? -1 : KEYWORD_BRACE + keyword;
+    }
+
+    /**
+     * Check if the brace opens a block.
+     *
+     * @param brace brace index
+     * @return is left brace
+     */
+    public boolean isLeftBrace(int brace) {
+        return brace < KEYWORD_BRACE ? (brace & 1) == 0 :
+                keywordPairs.getKind(brace - KEYWORD_BRACE) == BraceTokenSnapshot.LBRACE;
+    }
+
+    /**
+     * Check if the left brace is paired with the right brace.
+     *
+     * @param leftBrace left brace index
+     * @param rightBrace right brace index
+     * @return is paired
+     */
+    public boolean isPair(int leftBrace, int rightBrace) {
+        if (leftBrace < 0 || rightBrace < 0)
+            return false;
+        if (leftBrace < KEYWORD_BRACE || rightBrace < KEYWORD_BRACE)
+            return leftBrace + 1 == rightBrace && rightBrace < KEYWORD_BRACE;
+        return keywordPairs.isPair(leftBrace - KEYWORD_BRACE, rightBrace - KEYWORD_BRACE);
+    }
+
+    /**
+     * Get the text of the brace.
+     *
+     * @param brace brace index
+     * @return brace char or keyword
+     */
+    public String getBraceText(int brace) {
+        return brace < KEYWORD_BRACE ? String.valueOf(BRACES.charAt(brace)) :
+                keywordPairs.getKeyword(brace - KEYWORD_BRACE);
+    }
+
+    /**
+     * Find the left closest brace offset position.
+     *
+     * @param text document text
+     * @param offset caret offset
+     * @param isBlockCaret is block caret
+     * @return offset, {@link #NON_OFFSET} if not found
+     */
+    public int findLeftLParen(CharSequence text, int offset, boolean isBlockCaret) {
+        return findLeftLParens(text, offset, isBlockCaret, singleLevel) == 0 ? NON_OFFSET : singleLevel[0];
+    }
+
+    /**
+     * Find the right closest brace offset position.
+     *
+     * @param text document text
+     * @param offset caret offset
+     * @param isBlockCaret is block caret
+     * @return offset, {@link #NON_OFFSET} if not found
+     */
+    public int findRightRParen(CharSequence text, int offset, boolean isBlockCaret) {
+        return findRightRParens(text, offset, isBlockCaret, singleLevel) == 0 ? NON_OFFSET : singleLevel[0];
+    }
+
+    /**
+     * Walk left from the offset once, and record every unmatched left brace
+     * on the way as one enclosing level, innermost first.
+     *
+     * @param text document text
+     * @param offset caret offset
+     * @param isBlockCaret is block caret
+     * @param levels offsets of the levels to be filled
+     * @return levels count
+     */
+    public int findLeftLParens(CharSequence text, int offset, boolean isBlockCaret, int[] levels) {
+        lastScannedChars = 0;
+        int length = text.length();
+        if (length == 0 || offset < 0 || levels.length == 0)
+            return 0;
+        int caretOffset = Math.min(offset, length - 1);
+        int low = Math.max(0, caretOffset - maxDistance);
+        int count = 0;
+        int depth = 0;
+        int end = caretOffset + 1;
+        while (end > low) {
+            int start;
+            int braceCount;
+            if (quoteAware) {
+                start = Math.max(low, findLineStart(text, end - 1, low));
+                braceCount = collectLineBraces(text, start, end);
+            } else {
+                start = Math.max(low, end - CHUNK_SIZE);
+                braceCount = collectChunkBraces(text, start, end);
+            }
+            for (int i = braceCount - 1; i >= 0; i--) {
+                int braceOffset = lineBraces[i];
+                int brace = lineBraceIndexes[i];
+                if (isLeftBrace(brace)) {
+                    if (!isBlockCaret && braceOffset == caretOffset)
+                        continue;
+                    if (depth == 0) {
+                        levels[count++] = braceOffset;
+                        if (count == levels.length)
+                            return count;
+                    } else if (!isPair(brace, braceStack[--depth])) {
+                        return count; // unmatched braces
+                    }
+                } else {
+                    if (braceOffset == caretOffset)
+                        continue;
+                    push(depth++, brace);
+                }
+            }
+            end = start;
+        }
+        return count;
+    }
+
+    /**
+     * Walk right from the offset once, and record every unmatched right brace
+     * on the way as one enclosing level, innermost first.
+     *
+     * @param text document text
+     * @param offset caret offset
+     * @param isBlockCaret is block caret
+     * @param levels offsets of the levels to be filled
+     * @return levels count
+     */
+    public int findRightRParens(CharSequence text, int offset, boolean isBlockCaret, int[] levels) {
+        lastScannedChars = 0;
+        int length = text.length();
+        if (length == 0 || offset < 0 || levels.length == 0)
+            return 0;
+        int caretOffset = Math.min(offset, length - 1);
+        int high = (int) Math.min(length, (long) caretOffset + maxDistance + 1);
+        int count = 0;
+        int depth = 0;
+        int start = caretOffset;
+        boolean firstLine = true;
+        while (start < high) {
+            int end;
+            int braceCount;
+            int from = 0;
+            if (quoteAware) {
+                // the quotes are counted from the line start, within the max distance
+                int lineStart = firstLine ? findLineStart(text, start, Math.max(0, caretOffset - maxDistance)) : start;
+                end = Math.min(high, findLineEnd(text, start, high));
+                braceCount = collectLineBraces(text, lineStart, end);
+                while (from < braceCount && lineBraces[from] < start)
+                    from++;
+                firstLine = false;
+            } else {
+                end = Math.min(high, start + CHUNK_SIZE);
+                braceCount = collectChunkBraces(text, start, end);
+            }
+            for (int i = from; i < braceCount; i++) {
+                int braceOffset = lineBraces[i];
+                int brace = lineBraceIndexes[i];
+                if (!isLeftBrace(brace)) {
+                    if (depth == 0) {
+                        levels[count++] = braceOffset;
+                        if (count == levels.length)
+                            return count;
+                    } else if (!isPair(braceStack[--depth], brace)) {
+                        return count; // unmatched braces
+                    }
+                } else {
+                    if (isBlockCaret && braceOffset == caretOffset)
+                        continue;
+                    push(depth++, brace);
+                }
+            }
+            start = end;
+        }
+        return count;
+    }
+
+    /**
+     * Get the chars scanned by the last walk.
+     *
+     * @return scanned chars
+     */
+    public int getLastScannedChars() {
+        return lastScannedChars;
+    }
+
+    /**
+     * Find the quoted segment of the line around the offset, only if quote aware.
+     *
+     * @param text document text
+     * @param offset caret offset
+     * @param isBlockCaret is block caret
+     * @param quotes offsets of the open quote and the close quote to be filled
+     * @return is found
+     */
+    public boolean findQuotePair(CharSequence text, int offset, boolean isBlockCaret, int[] quotes) {
+        int length = text.length();
+        if (!quoteAware || length == 0 || offset < 0)
+            return false;
+        int caretOffset = Math.min(offset, length - 1);
+        int lineStart = findLineStart(text, caretOffset, Math.max(0, caretOffset - maxDistance));
+        int lineEnd = findLineEnd(text, caretOffset, (int) Math.min(length, (long) caretOffset + maxDistance + 1));
+        char quote = 0;
+        int quoteStart = NON_OFFSET;
+        for (int i = lineStart; i < lineEnd; i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    if (quoteStart <= caretOffset && caretOffset <= i) {
+                        if (!isBlockCaret && quoteStart == offset)
+                            return false;
+                        quotes[0] = quoteStart;
+                        quotes[1] = i;
+                        return true;
+                    }
+                    quote = 0;
+                }
+            } else if (isQuote(c, i == lineStart ? 0 : text.charAt(i - 1))) {
+                if (i > caretOffset)
+                    return false;
+                quote = c;
+                quoteStart = i;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the chars in [start, end) into the buffer, override it to read
+     * the text more efficiently.
+     *
+     * @param text text
+     * @param start start offset
+     * @param end end offset
+     * @param buffer buffer
+     */
+    protected void getChars(CharSequence text, int start, int end, char[] buffer) {
+        if (text instanceof String) {
+            ((String) text).getChars(start, end, buffer, 0);
+        } else {
+            for (int i = start; i < end; i++) {
+                buffer[i - start] = text.charAt(i);
+            }
+        }
+    }
+
+    private int collectChunkBraces(CharSequence text, int start, int end) {
+        char[] chars = readChars(text, start, end);
+        lineBraceCount = 0;
+        for (int i = 0; i < end - start; i++) {
+            char c = chars[i];
+            int brace = braceIndex(c);
+            if (brace >= 0)
+                addLineBrace(start + i, brace);
+            else if (hasKeywords && isWordChar(c) && !isWordChar(i > 0 ? chars[i - 1] : charBefore(text, start)))
+                collectKeyword(text, start + i);
+        }
+        return lineBraceCount;
+    }
+
+    /**
+     * Collect the braces out of the quotes in the line, the line is read chunk by
+     * chunk and the quote state is carried over the chunks.
+     */
+    private int collectLineBraces(CharSequence text, int start, int end) {
+        lineBraceCount = 0;
+        char quote = 0;
+        char previous = 0;
+        char wordPrevious = charBefore(text, start);
+        boolean escaped = false;
+        for (int chunkStart = start; chunkStart < end; chunkStart += CHUNK_SIZE) {
+            int chunkEnd = Math.min(end, chunkStart + CHUNK_SIZE);
+            char[] chars = readChars(text, chunkStart, chunkEnd);
+            for (int i = 0; i < chunkEnd - chunkStart; i++) {
+                char c = chars[i];
+                if (escaped) {
+                    escaped = false;
+                } else if (quote != 0) {
+                    if (c == '\\')
+                        escaped = true;
+                    else if (c == quote)
+                        quote = 0;
+                } else if (isQuote(c, previous)) {
+                    quote = c;
+                } else {
+                    int brace = braceIndex(c);
+                    if (brace >= 0)
+                        addLineBrace(chunkStart + i, brace);
+                    else if (hasKeywords && isWordChar(c) && !isWordChar(wordPrevious))
+                        collectKeyword(text, chunkStart + i);
+                }
+                previous = c;
+                wordPrevious = c;
+            }
+        }
+        return lineBraceCount;
+    }
+
+    /**
+     * Collect the keyword starting at the offset, the word may go on past the
+     * chunk, and is read up to the longest keyword.
+     */
+    private void collectKeyword(CharSequence text, int wordStart) {
+        int keyword = findKeyword(text, wordStart);
+        if (keyword != BraceTokenSnapshot.NON_INDEX)
+            addLineBrace(wordStart, KEYWORD_BRACE + keyword);
+    }
+
+    private int findKeyword(CharSequence text, int wordStart) {
+        // a word longer than the longest keyword is not read to its end
+        int maxEnd = Math.min(text.length(), wordStart + keywordPairs.getMaxLength() + 1);
+        int wordEnd = wordStart;
+        while (wordEnd < maxEnd && isWordChar(text.charAt(wordEnd)))
+            wordEnd++;
+        int keyword = keywordPairs.findKeyword(text, wordStart, wordEnd);
+        return keyword < MAX_KEYWORDS ? keyword : BraceTokenSnapshot.NON_INDEX;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static char charBefore(CharSequence text, int offset) {
+        return offset > 0 ? text.charAt(offset - 1) : 0;
+    }
+
+    private char[] readChars(CharSequence text, int start, int end) {
+        lastScannedChars += end - start;
+        getChars(text, start, end, chunk);
+        return chunk;
+    }
+
+    /**
+     * Check if the char opens a quoted segment, the apostrophe in a word is not a quote.
+     */
+    private static boolean isQuote(char c, char previous) {
+        return c == '"' || (c == '\'' && !Character.isLetterOrDigit(previous));
+    }
+
+    private void addLineBrace(int offset, int brace) {
+        if (lineBraceCount == lineBraces.length) {
+            int[] newLineBraces = new int[lineBraceCount * 2];
+            byte[] newLineBraceIndexes = new byte[lineBraceCount * 2];
+            System.arraycopy(lineBraces, 0, newLineBraces, 0, lineBraceCount);
+            System.arraycopy(lineBraceIndexes, 0, newLineBraceIndexes, 0, lineBraceCount);
+            lineBraces = newLineBraces;
+            lineBraceIndexes = newLineBraceIndexes;
+        }
+        lineBraces[lineBraceCount] = offset;
+        lineBraceIndexes[lineBraceCount++] = (byte) brace;
+    }
+
+    private void push(int depth, int brace) {
+        if (depth == braceStack.length) {
+            int[] newBraceStack = new int[depth * 2];
+            System.arraycopy(braceStack, 0, newBraceStack, 0, depth);
+            braceStack = newBraceStack;
+        }
+        braceStack[depth] = brace;
+    }
+
+    private static int findLineStart(CharSequence text, int offset, int low) {
+        int i = offset;
+        while (i > low && text.charAt(i - 1) != '\n')
+            i--;
+        return i;
+    }
+
+    private static int findLineEnd(CharSequence text, int offset, int high) {
+        int i = offset;
+        while (i < high && text.charAt(i) != '\n')
+            i++;
+        return i < high ? i + 1 : i;
+    }
+}
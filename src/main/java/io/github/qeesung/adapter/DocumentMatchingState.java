@@ -0,0 +1,174 @@
+package io.github.qeesung.adapter;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.util.Key;
+import io.github.qeesung.util.MemoryEstimate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Matching state shared by all the highlighted editors of one document, such as
+ * the split views, the diff side and the preview tab of the same file, so the
+ * document structure is built and cached once for all of them.
+ * <p>
+ * The state tracks the attached editors, and is released with all the cached values
+ * when the last editor is detached. Attaching or detaching the same editor twice has
+ * no effect, and the editors are weakly referenced, so an editor whose detach is
+ * missed is not kept reachable by the document. Only the caret state and the
+ * highlighters stay in the editor.
+ */
+public class DocumentMatchingState {
+    private static final Key<DocumentMatchingState> DOCUMENT_MATCHING_STATE =
+            Key.create("io.github.qeesung.DocumentMatchingState");
+
+    /**
+     * Guards the creation and the release of the states of all the documents.
+     */
+    private static final Object STATE_LOCK = new Object();
+
+    private final Set<Editor> editors = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Map<Key<?>, Object> values = new HashMap<>();
+
+    /**
+     * State should be created by the first attached editor.
+     */
+    private DocumentMatchingState() {
+    }
+
+    /**
+     * Attach the editor to the state of its document, the state is created by the
+     * first attached editor.
+     *
+     * @param editor editor
+     */
+    public static void attach(Editor editor) {
+        Document document = editor.getDocument();
+        synchronized (STATE_LOCK) {
+            DocumentMatchingState state = document.getUserData(DOCUMENT_MATCHING_STATE);
+            if (state == null) {
+                state = new DocumentMatchingState();
+                document.putUserData(DOCUMENT_MATCHING_STATE, state);
+            }
+            synchronized (state) {
+                state.editors.add(editor);
+            }
+        }
+    }
+
+    /**
+     * Detach the editor from the state of its document, the state is released with
+     * the last editor, an editor not attached is ignored.
+     *
+     * @param editor editor
+     */
+    public static void detach(Editor editor) {
+        Document document = editor.getDocument();
+        synchronized (STATE_LOCK) {
+            DocumentMatchingState state = document.getUserData(DOCUMENT_MATCHING_STATE);
+            if (state == null)
+                return;
+            synchronized (state) {
+                if (!state.editors.remove(editor) || !state.editors.isEmpty())
+                    return;
+                state.values.clear();
+            }
+            document.putUserData(DOCUMENT_MATCHING_STATE, null);
+        }
+    }
+
+    /**
+     * Get the state of the document.
+     *
+     * @param document document
+     * @return state, null if no editor is attached
+     */
+    public static DocumentMatchingState getInstance(Document document) {
+        return document.getUserData(DOCUMENT_MATCHING_STATE);
+    }
+
+    /**
+     * Get the cached value.
+     *
+     * @param key value key
+     * @param <T> value type
+     * @return cached value, null if not cached
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getValue(Key<T> key) {
+        return (T) values.get(key);
+    }
+
+    /**
+     * Cache the value until the last editor is detached, not cached if the
+     * state is already released.
+     *
+     * @param key value key
+     * @param value value
+     * @param <T> value type
+     */
+    public synchronized <T> void putValue(Key<T> key, T value) {
+        if (!editors.isEmpty())
+            values.put(key, value);
+    }
+
+    /**
+     * Get the cached value, or create and cache it.
+     *
+     * @param key value key
+     * @param factory value factory
+     * @param <T> value type
+     * @return cached or created value
+     */
+    public synchronized <T> T getOrCreateValue(Key<T> key, Supplier<T> factory) {
+        T value = getValue(key);
+        if (value == null) {
+            value = factory.get();
+            putValue(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Estimate the bytes of the cached values.
+     *
+     * @return estimated bytes
+     */
+    public long estimateBytes() {
+        List<Object> cachedValues;
+        synchronized (this) {
+            cachedValues = new ArrayList<>(values.values());
+        }
+        // the values estimate themselves under their own locks
+        long bytes = 0;
+        for (Object value : cachedValues) {
+            if (value instanceof MemoryEstimate)
+                bytes += ((MemoryEstimate) value).estimateBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Release all the cached values, they are created again on the next query,
+     * the editors stay attached.
+     */
+    public synchronized void releaseValues() {
+        values.clear();
+    }
+
+    /**
+     * Get the count of the attached editors.
+     *
+     * @return editor count
+     */
+    public synchronized int getEditorCount() {
+        return editors.size();
+    }
+}
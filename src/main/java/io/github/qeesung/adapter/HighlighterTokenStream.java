@@ -0,0 +1,115 @@
+package io.github.qeesung.adapter;
+
+import com.intellij.openapi.editor.highlighter.HighlighterIterator;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.tree.IElementType;
+import io.github.qeesung.brace.BraceTokenSnapshot;
+import io.github.qeesung.brace.KeywordPairs;
+import io.github.qeesung.core.TokenStream;
+
+import static com.intellij.codeInsight.highlighting.BraceMatchingUtil.isLBraceToken;
+import static com.intellij.codeInsight.highlighting.BraceMatchingUtil.isRBraceToken;
+
+/**
+ * Token stream over the highlighter iterator, the braces are classified by the
+ * brace matcher of the file type, and the block keyword tokens are typed by the
+ * keyword marker types with the keyword index plus one as the variant. The walk checks the progress every {@value #CHECK_CANCELED_TOKENS}
+ * tokens, so the build in the background read action gives way to the write action.
+ */
+public class HighlighterTokenStream implements TokenStream<IElementType> {
+    private static final int CHECK_CANCELED_TOKENS = 1024;
+
+    private final HighlighterIterator iterator;
+    private final CharSequence fileText;
+    private final FileType fileType;
+    private final KeywordPairs keywordPairs;
+    private byte kind;
+    private IElementType type;
+    private int variant;
+    private boolean classified;
+    private int advancedTokens;
+
+    /**
+     * Constructor.
+     *
+     * @param iterator highlighter iterator at the first token
+     * @param fileText file text
+     * @param fileType file type
+     * @param keywordPairs block keyword pairs
+     */
+    public HighlighterTokenStream(HighlighterIterator iterator, CharSequence fileText,
+                                  FileType fileType, KeywordPairs keywordPairs) {
+        this.iterator = iterator;
+        this.fileText = fileText;
+        this.fileType = fileType;
+        this.keywordPairs = keywordPairs;
+    }
+
+    @Override
+    public boolean atEnd() {
+        return iterator.atEnd();
+    }
+
+    @Override
+    public void advance() {
+        iterator.advance();
+        classified = false;
+        if (++advancedTokens % CHECK_CANCELED_TOKENS == 0)
+            ProgressManager.checkCanceled();
+    }
+
+    @Override
+    public int getStart() {
+        return iterator.getStart();
+    }
+
+    @Override
+    public int getEnd() {
+        return iterator.getEnd();
+    }
+
+    @Override
+    public byte getKind() {
+        classify();
+        return kind;
+    }
+
+    @Override
+    public IElementType getType() {
+        classify();
+        return type;
+    }
+
+    @Override
+    public int getVariant() {
+        classify();
+        return variant;
+    }
+
+    private void classify() {
+        if (classified)
+            return;
+        classified = true;
+        type = iterator.getTokenType();
+        variant = 0;
+        if (isLBraceToken(iterator, fileText, fileType)) {
+            kind = BraceTokenSnapshot.LBRACE;
+        } else if (isRBraceToken(iterator, fileText, fileType)) {
+            kind = BraceTokenSnapshot.RBRACE;
+        } else if (BraceMatchingUtilAdapter.isStringToken(type)) {
+            kind = BraceTokenSnapshot.STRING;
+        } else {
+            int keyword = keywordPairs.isEmpty() ? BraceTokenSnapshot.NON_INDEX :
+                    keywordPairs.findKeyword(fileText, iterator.getStart(), iterator.getEnd());
+            if (keyword == BraceTokenSnapshot.NON_INDEX) {
+                kind = BraceTokenSnapshot.OTHER;
+                return;
+            }
+            // the keyword tokens of any lexer type are indexed by the marker type and the keyword
+            kind = keywordPairs.getKind(keyword);
+            type = keywordPairs.getType(keyword);
+            variant = keyword + 1;
+        }
+    }
+}
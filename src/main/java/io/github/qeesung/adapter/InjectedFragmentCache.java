@@ -0,0 +1,387 @@
+package io.github.qeesung.adapter;
+
+import com.intellij.injected.editor.DocumentWindow;
+import com.intellij.lang.Language;
+import com.intellij.lang.injection.InjectedLanguageManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.ex.util.LexerEditorHighlighter;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.PlainSyntaxHighlighter;
+import com.intellij.openapi.fileTypes.SyntaxHighlighter;
+import com.intellij.openapi.fileTypes.SyntaxHighlighterFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Segment;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiLanguageInjectionHost;
+import com.intellij.psi.util.PsiTreeUtil;
+import io.github.qeesung.brace.BraceTokenSnapshot;
+import io.github.qeesung.util.MemoryEstimate;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Cache the injected language fragments of the document for all of its editors,
+ * only the string tokens of the host are looked up, and every string token is
+ * looked up once until it is edited.
+ * <p>
+ * The looked up string tokens are kept by their host range, an edit only drops
+ * the tokens whose host range or fragment host ranges touch the edit, and shifts
+ * the tokens after the edit. The brace token snapshot of the fragment is built
+ * lazily and dropped with the fragment. The injected file is weakly referenced,
+ * the token is looked up again once its injected file is collected or invalid.
+ */
+public class InjectedFragmentCache implements MemoryEstimate {
+    private static final Key<InjectedFragmentCache> INJECTED_FRAGMENT_CACHE =
+            Key.create("io.github.qeesung.InjectedFragmentCache");
+    // fragment with its host ranges and the map entry, the text is counted apart
+    private static final int FRAGMENT_BYTES = 160;
+
+    private long modificationStamp;
+    private final Map<Integer, StringTokenFragments> stringTokenFragments = new HashMap<>();
+
+    /**
+     * Cache should be created for the current document version.
+     *
+     * @param document host document
+     */
+    private InjectedFragmentCache(Document document) {
+        this.modificationStamp = document.getModificationStamp();
+    }
+
+    /**
+     * Get the injected fragment around the offset.
+     *
+     * @param editor host editor
+     * @param hostFile host file
+     * @param hostSnapshot brace token snapshot of the host document
+     * @param offset caret offset in the host document
+     * @return injected fragment, null if the offset is not in an injected fragment
+     */
+    public static Fragment getFragment(Editor editor, PsiFile hostFile,
+                                       BraceTokenSnapshot hostSnapshot, int offset) {
+        int index = hostSnapshot.findTokenAt(offset);
+        if (index == BraceTokenSnapshot.NON_INDEX || hostSnapshot.getKind(index) != BraceTokenSnapshot.STRING)
+            return null;
+
+        Document document = editor.getDocument();
+        DocumentMatchingState documentState = DocumentMatchingState.getInstance(document);
+        InjectedFragmentCache cache = documentState != null ?
+                documentState.getOrCreateValue(INJECTED_FRAGMENT_CACHE, () -> new InjectedFragmentCache(document)) :
+                editor.getUserData(INJECTED_FRAGMENT_CACHE);
+        if (cache == null) {
+            cache = new InjectedFragmentCache(document);
+            editor.putUserData(INJECTED_FRAGMENT_CACHE, cache);
+        }
+        synchronized (cache) {
+            return cache.findFragment(editor, hostFile, hostSnapshot, index, offset);
+        }
+    }
+
+    /**
+     * Drop the looked up string tokens touched by the edit and shift the tokens after
+     * it, every editor of the document reports the edit and it is applied once.
+     *
+     * @param editor host editor
+     * @param e document event
+     */
+    public static void documentChanged(Editor editor, DocumentEvent e) {
+        DocumentMatchingState documentState = DocumentMatchingState.getInstance(e.getDocument());
+        InjectedFragmentCache cache = documentState != null ?
+                documentState.getValue(INJECTED_FRAGMENT_CACHE) : editor.getUserData(INJECTED_FRAGMENT_CACHE);
+        if (cache == null)
+            return;
+        synchronized (cache) {
+            cache.applyEdit(e);
+        }
+    }
+
+    private void applyEdit(DocumentEvent e) {
+        long documentStamp = e.getDocument().getModificationStamp();
+        if (modificationStamp == documentStamp)
+            return;
+        // an edit is missed, the token ranges are unknown
+        if (modificationStamp != e.getOldTimeStamp()) {
+            stringTokenFragments.clear();
+            modificationStamp = documentStamp;
+            return;
+        }
+        modificationStamp = documentStamp;
+        if (stringTokenFragments.isEmpty())
+            return;
+
+        int editStart = e.getOffset();
+        int oldEditEnd = editStart + e.getOldLength();
+        int delta = e.getNewLength() - e.getOldLength();
+        List<StringTokenFragments> shiftedTokens = new ArrayList<>();
+        Iterator<StringTokenFragments> iterator = stringTokenFragments.values().iterator();
+        while (iterator.hasNext()) {
+            StringTokenFragments token = iterator.next();
+            if (token.touches(editStart, oldEditEnd)) {
+                iterator.remove();
+            } else if (delta != 0 && token.start >= oldEditEnd) {
+                iterator.remove();
+                shiftedTokens.add(token.shift(delta));
+            }
+        }
+        for (StringTokenFragments token : shiftedTokens)
+            stringTokenFragments.put(token.start, token);
+    }
+
+    private Fragment findFragment(Editor editor, PsiFile hostFile,
+                                  BraceTokenSnapshot hostSnapshot, int index, int offset) {
+        long documentStamp = editor.getDocument().getModificationStamp();
+        // the token offsets of an old snapshot are not the offsets of the cached tokens
+        if (hostSnapshot.getModificationStamp() != documentStamp)
+            return null;
+        // an edit is missed, the token ranges are unknown
+        if (modificationStamp != documentStamp) {
+            stringTokenFragments.clear();
+            modificationStamp = documentStamp;
+        }
+
+        int tokenStart = hostSnapshot.getStart(index);
+        StringTokenFragments token = stringTokenFragments.get(tokenStart);
+        if (token == null || !token.isValid()) {
+            Project project = hostFile.getProject();
+            // the injections are not up to date until the document is committed
+            if (PsiDocumentManager.getInstance(project).isUncommited(editor.getDocument()))
+                return null;
+            token = new StringTokenFragments(tokenStart, hostSnapshot.getEnd(index),
+                    lookupFragments(project, hostFile, tokenStart));
+            stringTokenFragments.put(tokenStart, token);
+        }
+        for (Fragment fragment : token.fragments) {
+            if (fragment.containsHostOffset(offset))
+                return fragment;
+        }
+        return null;
+    }
+
+    private List<Fragment> lookupFragments(Project project, PsiFile hostFile, int tokenStart) {
+        PsiLanguageInjectionHost host = PsiTreeUtil.getParentOfType(
+                hostFile.findElementAt(tokenStart), PsiLanguageInjectionHost.class, false);
+        if (host == null)
+            return Collections.emptyList();
+        List<Pair<PsiElement, TextRange>> injectedFiles =
+                InjectedLanguageManager.getInstance(project).getInjectedPsiFiles(host);
+        if (injectedFiles == null)
+            return Collections.emptyList();
+
+        List<Fragment> fragments = new ArrayList<>(injectedFiles.size());
+        for (Pair<PsiElement, TextRange> injectedFile : injectedFiles) {
+            PsiFile injectedPsiFile = injectedFile.getFirst().getContainingFile();
+            Document document = PsiDocumentManager.getInstance(project).getDocument(injectedPsiFile);
+            if (document instanceof DocumentWindow)
+                fragments.add(new Fragment(this, injectedPsiFile, (DocumentWindow) document));
+        }
+        return fragments;
+    }
+
+    /**
+     * Estimate the bytes of the looked up fragments and the fragment snapshots.
+     *
+     * @return estimated bytes
+     */
+    @Override
+    public synchronized long estimateBytes() {
+        long bytes = OBJECT_HEADER_BYTES * 2;
+        for (StringTokenFragments token : stringTokenFragments.values()) {
+            bytes += OBJECT_HEADER_BYTES * 2;
+            for (Fragment fragment : token.fragments) {
+                bytes += FRAGMENT_BYTES + fragment.getText().length() * 2L;
+                if (fragment.snapshot != null)
+                    bytes += fragment.snapshot.estimateBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private synchronized BraceTokenSnapshot getFragmentSnapshot(Fragment fragment) {
+        if (fragment.snapshot == null)
+            fragment.snapshot = buildFragmentSnapshot(fragment);
+        return fragment.snapshot;
+    }
+
+    /**
+     * Lex the fragment text with the syntax highlighter of the injected language.
+     */
+    private static BraceTokenSnapshot buildFragmentSnapshot(Fragment fragment) {
+        PsiFile psiFile = fragment.getPsiFile();
+        VirtualFile virtualFile = psiFile != null ? psiFile.getVirtualFile() : null;
+        SyntaxHighlighter syntaxHighlighter = SyntaxHighlighterFactory.getSyntaxHighlighter(
+                fragment.getLanguage(), fragment.project, virtualFile);
+        if (syntaxHighlighter == null)
+            syntaxHighlighter = new PlainSyntaxHighlighter();
+        LexerEditorHighlighter editorHighlighter = new LexerEditorHighlighter(
+                syntaxHighlighter, EditorColorsManager.getInstance().getGlobalScheme());
+        editorHighlighter.setText(fragment.getText());
+        return BraceTokenSnapshotBuilder.build(editorHighlighter, fragment.getText(), fragment.fileType,
+                fragment.modificationStamp);
+    }
+
+    /**
+     * Fragments looked up for a string token of the host, with the host range of the token.
+     */
+    private static class StringTokenFragments {
+        private final int start;
+        private final int end;
+        private final List<Fragment> fragments;
+
+        private StringTokenFragments(int start, int end, List<Fragment> fragments) {
+            this.start = start;
+            this.end = end;
+            this.fragments = fragments;
+        }
+
+        /**
+         * Check if the edit touches the token or the host ranges of its fragments, an
+         * edit next to the range may extend the token, so the range ends are included.
+         */
+        private boolean touches(int editStart, int oldEditEnd) {
+            if (editStart <= end && oldEditEnd >= start)
+                return true;
+            for (Fragment fragment : fragments) {
+                for (Segment hostRange : fragment.hostRanges) {
+                    if (editStart <= hostRange.getEndOffset() && oldEditEnd >= hostRange.getStartOffset())
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * The host ranges of the fragments are range markers shifted by the document,
+         * only the token range is shifted here.
+         */
+        private StringTokenFragments shift(int delta) {
+            return new StringTokenFragments(start + delta, end + delta, fragments);
+        }
+
+        private boolean isValid() {
+            for (Fragment fragment : fragments) {
+                PsiFile psiFile = fragment.getPsiFile();
+                if (psiFile == null || !psiFile.isValid())
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Injected language fragment of the host document.
+     */
+    public static class Fragment {
+        private final InjectedFragmentCache cache;
+        private final WeakReference<PsiFile> psiFile;
+        private final Project project;
+        private final Language language;
+        private final FileType fileType;
+        private final DocumentWindow documentWindow;
+        private final Segment[] hostRanges;
+        private final String text;
+        private final long modificationStamp;
+        private BraceTokenSnapshot snapshot;
+
+        private Fragment(InjectedFragmentCache cache, PsiFile psiFile, DocumentWindow documentWindow) {
+            this.cache = cache;
+            this.psiFile = new WeakReference<>(psiFile);
+            this.project = psiFile.getProject();
+            this.language = psiFile.getLanguage();
+            this.fileType = psiFile.getFileType();
+            this.documentWindow = documentWindow;
+            this.hostRanges = documentWindow.getHostRanges();
+            this.text = documentWindow.getText();
+            this.modificationStamp = documentWindow.getModificationStamp();
+        }
+
+        /**
+         * Get the injected file.
+         *
+         * @return injected file, null if it is collected
+         */
+        public PsiFile getPsiFile() {
+            return psiFile.get();
+        }
+
+        /**
+         * Get the injected language.
+         *
+         * @return injected language
+         */
+        public Language getLanguage() {
+            return language;
+        }
+
+        /**
+         * Get the file type of the injected file.
+         *
+         * @return injected file type
+         */
+        public FileType getFileType() {
+            return fileType;
+        }
+
+        /**
+         * Get the fragment text.
+         *
+         * @return fragment text
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Get the brace token snapshot of the fragment text, built lazily.
+         *
+         * @return brace token snapshot
+         */
+        public BraceTokenSnapshot getSnapshot() {
+            return cache.getFragmentSnapshot(this);
+        }
+
+        /**
+         * Check if the host offset is in the fragment, the range end is included
+         * for the line caret after the last char.
+         *
+         * @param hostOffset host offset
+         * @return is in the fragment
+         */
+        public boolean containsHostOffset(int hostOffset) {
+            for (Segment hostRange : hostRanges) {
+                if (hostRange.getStartOffset() <= hostOffset && hostOffset <= hostRange.getEndOffset())
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Convert the host offset to the fragment offset.
+         *
+         * @param hostOffset host offset
+         * @return fragment offset
+         */
+        public int hostToInjected(int hostOffset) {
+            return documentWindow.hostToInjected(hostOffset);
+        }
+
+        /**
+         * Convert the fragment offset to the host offset.
+         *
+         * @param injectedOffset fragment offset
+         * @return host offset
+         */
+        public int injectedToHost(int injectedOffset) {
+            return documentWindow.injectedToHost(injectedOffset);
+        }
+    }
+}
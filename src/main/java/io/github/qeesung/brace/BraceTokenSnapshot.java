@@ -0,0 +1,46 @@
+package io.github.qeesung.brace;
+
+import com.intellij.psi.tree.IElementType;
+import io.github.qeesung.core.BraceTokens;
+import io.github.qeesung.util.MemoryEstimate;
+
+/**
+ * Brace tokens of one document version typed by the lexer element types, the
+ * matching walks and the bracket structure are the IDE independent ones of
+ * {@link BraceTokens}.
+ */
+public class BraceTokenSnapshot extends BraceTokens<IElementType> implements MemoryEstimate {
+    /**
+     * Constructor.
+     *
+     * @param modificationStamp document modification stamp
+     * @param documentLength document length
+     * @param lastTokenStart start offset of the last token in document, including the other tokens
+     * @param size tokens count
+     * @param starts tokens start offset
+     * @param ends tokens end offset
+     * @param kinds tokens kind
+     * @param typeIds tokens type id, index of the element types
+     * @param elementTypes element types
+     * @param pairTable is the left type id paired with the right type id
+     */
+    public BraceTokenSnapshot(long modificationStamp, int documentLength, int lastTokenStart,
+                              int size, int[] starts, int[] ends, byte[] kinds, short[] typeIds,
+                              IElementType[] elementTypes, boolean[][] pairTable) {
+        super(modificationStamp, documentLength, lastTokenStart, size, starts, ends, kinds, typeIds,
+                elementTypes, pairTable);
+    }
+
+    /**
+     * Constructor sharing the token arrays of the brace tokens.
+     *
+     * @param tokens brace tokens typed by the element types
+     */
+    public BraceTokenSnapshot(BraceTokens<IElementType> tokens) {
+        super(tokens);
+    }
+
+    public IElementType getElementType(int index) {
+        return getType(index);
+    }
+}
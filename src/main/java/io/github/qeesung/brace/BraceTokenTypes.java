@@ -9,6 +9,14 @@ import java.util.Map;
 public class BraceTokenTypes {
     private final static Map<IElementType, String> ElementType2Text = new HashMap<>();
     public final static IElementType DOUBLE_QUOTE = new IElementType("DOUBLE_QUOTE", Language.ANY);
+    public final static IElementType PLAIN_LPARENTH = new IElementType("PLAIN_LPARENTH", Language.ANY);
+    public final static IElementType PLAIN_RPARENTH = new IElementType("PLAIN_RPARENTH", Language.ANY);
+    public final static IElementType PLAIN_LBRACKET = new IElementType("PLAIN_LBRACKET", Language.ANY);
+    public final static IElementType PLAIN_RBRACKET = new IElementType("PLAIN_RBRACKET", Language.ANY);
+    public final static IElementType PLAIN_LBRACE = new IElementType("PLAIN_LBRACE", Language.ANY);
+    public final static IElementType PLAIN_RBRACE = new IElementType("PLAIN_RBRACE", Language.ANY);
+    public final static IElementType KEYWORD_LBRACE = new IElementType("KEYWORD_LBRACE", Language.ANY);
+    public final static IElementType KEYWORD_RBRACE = new IElementType("KEYWORD_RBRACE", Language.ANY);
     public final static String GROOVY_STRING_TOKEN = "Gstring";
     public final static String GROOVY_SINGLE_QUOTE_TOKEN = "string";
     public final static String KOTLIN_STRING_TOKEN = "REGULAR_STRING_PART";
@@ -20,9 +28,48 @@ public class BraceTokenTypes {
 
     static {
         ElementType2Text.put(DOUBLE_QUOTE, "\"");
+        ElementType2Text.put(PLAIN_LPARENTH, "(");
+        ElementType2Text.put(PLAIN_RPARENTH, ")");
+        ElementType2Text.put(PLAIN_LBRACKET, "[");
+        ElementType2Text.put(PLAIN_RBRACKET, "]");
+        ElementType2Text.put(PLAIN_LBRACE, "{");
+        ElementType2Text.put(PLAIN_RBRACE, "}");
     }
 
     public static String getElementTypeText(IElementType type) {
         return ElementType2Text.get(type);
     }
+
+    /**
+     * Check if the element type is a block keyword marker type, the opening and the
+     * closing keywords of all the languages are typed by the two marker types.
+     *
+     * @param type element type
+     * @return is keyword type
+     */
+    public static boolean isKeywordType(IElementType type) {
+        return type == KEYWORD_LBRACE || type == KEYWORD_RBRACE;
+    }
+
+    /**
+     * Check if the brace token of the element type is made of the identifier chars,
+     * such as the {@code begin} and {@code end} tokens of a brace matcher. The token
+     * text is told by the debug name, the lexers name the keyword tokens by the keyword,
+     * such as {@code do} or {@code kBEGIN}, and the punctuation tokens by the brace chars
+     * or by the upper case names, such as {@code (} or {@code LPARENTH}.
+     *
+     * @param type brace element type
+     * @return is word brace type
+     */
+    public static boolean isWordBraceType(IElementType type) {
+        String name = type.toString();
+        boolean hasLowerCase = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_')
+                return false;
+            hasLowerCase |= Character.isLowerCase(c);
+        }
+        return hasLowerCase;
+    }
 }
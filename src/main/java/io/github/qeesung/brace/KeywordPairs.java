@@ -0,0 +1,209 @@
+package io.github.qeesung.brace;
+
+import com.intellij.psi.tree.IElementType;
+import io.github.qeesung.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Block keyword pairs of one language, such as {@code do ... end} or {@code if ... fi},
+ * several opening keywords may be closed by the same keyword.
+ * <p>
+ * The pairs are written as groups separated by {@code ;}, every group is the opening
+ * keywords and the closing keywords separated by {@code /}, for example
+ * {@code begin case do / end; if / fi}. The keyword tokens are matched by the whole
+ * token text, typed by the {@link BraceTokenTypes#KEYWORD_LBRACE} and
+ * {@link BraceTokenTypes#KEYWORD_RBRACE} marker types, and told apart by the keyword index.
+ */
+public class KeywordPairs {
+    public final static KeywordPairs EMPTY = new KeywordPairs(Collections.emptyList(), Collections.emptyList(),
+            new boolean[0][0]);
+    private final static String GROUP_SEPARATOR = ";";
+    private final static String SIDE_SEPARATOR = "/";
+    private final static List<Pair<IElementType, IElementType>> MARKER_PAIRS = Collections.singletonList(
+            new Pair<>(BraceTokenTypes.KEYWORD_LBRACE, BraceTokenTypes.KEYWORD_RBRACE));
+
+    private final String[] keywords;
+    private final byte[] kinds;
+    private final boolean[][] pairTable;
+    private final int minLength;
+    private final int maxLength;
+
+    private KeywordPairs(List<String> leftKeywords, List<String> rightKeywords, boolean[][] pairTable) {
+        int count = leftKeywords.size() + rightKeywords.size();
+        this.keywords = new String[count];
+        this.kinds = new byte[count];
+        this.pairTable = pairTable;
+        int index = addKeywords(leftKeywords, BraceTokenSnapshot.LBRACE, 0);
+        addKeywords(rightKeywords, BraceTokenSnapshot.RBRACE, index);
+        int minLength = Integer.MAX_VALUE;
+        int maxLength = 0;
+        for (String keyword : keywords) {
+            minLength = Math.min(minLength, keyword.length());
+            maxLength = Math.max(maxLength, keyword.length());
+        }
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    private int addKeywords(List<String> sideKeywords, byte kind, int index) {
+        for (String keyword : sideKeywords) {
+            keywords[index] = keyword;
+            kinds[index] = kind;
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Parse the keyword pair groups, the malformed groups are ignored.
+     *
+     * @param text keyword pair groups
+     * @return keyword pairs
+     */
+    public static KeywordPairs parse(String text) {
+        if (text == null || text.trim().isEmpty())
+            return EMPTY;
+        List<String> leftKeywords = new ArrayList<>();
+        List<String> rightKeywords = new ArrayList<>();
+        List<String[]> pairs = new ArrayList<>();
+        for (String group : text.split(GROUP_SEPARATOR)) {
+            String[] sides = group.split(SIDE_SEPARATOR);
+            if (sides.length != 2)
+                continue;
+            String[] lefts = splitKeywords(sides[0]);
+            String[] rights = splitKeywords(sides[1]);
+            for (String left : lefts) {
+                for (String right : rights) {
+                    // a keyword opens or closes blocks, never both
+                    if (rightKeywords.contains(left) || leftKeywords.contains(right) || left.equals(right))
+                        continue;
+                    if (!leftKeywords.contains(left))
+                        leftKeywords.add(left);
+                    if (!rightKeywords.contains(right))
+                        rightKeywords.add(right);
+                    pairs.add(new String[]{left, right});
+                }
+            }
+        }
+        if (pairs.isEmpty())
+            return EMPTY;
+
+        // the right keywords are indexed after the left keywords
+        int count = leftKeywords.size() + rightKeywords.size();
+        boolean[][] pairTable = new boolean[count][count];
+        for (String[] pair : pairs)
+            pairTable[leftKeywords.indexOf(pair[0])][leftKeywords.size() + rightKeywords.indexOf(pair[1])] = true;
+        return new KeywordPairs(leftKeywords, rightKeywords, pairTable);
+    }
+
+    private static String[] splitKeywords(String side) {
+        String trimmed = side.trim();
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+    }
+
+    public boolean isEmpty() {
+        return keywords.length == 0;
+    }
+
+    /**
+     * Get the marker type pair of the keywords, the keyword pairs themselves are
+     * checked by {@link #isPair(int, int)}.
+     *
+     * @return marker type pair, empty if no keyword pair
+     */
+    public List<Pair<IElementType, IElementType>> getPairs() {
+        return isEmpty() ? Collections.<Pair<IElementType, IElementType>>emptyList() : MARKER_PAIRS;
+    }
+
+    /**
+     * Find the keyword of the token text, compared in place without copying the text.
+     *
+     * @param text file text
+     * @param start token start offset
+     * @param end token end offset
+     * @return keyword index, {@link BraceTokenSnapshot#NON_INDEX} if the token is not a keyword
+     */
+    public int findKeyword(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length < minLength || length > maxLength)
+            return BraceTokenSnapshot.NON_INDEX;
+        for (int i = 0; i < keywords.length; i++) {
+            if (keywords[i].length() == length && regionMatches(text, start, keywords[i]))
+                return i;
+        }
+        return BraceTokenSnapshot.NON_INDEX;
+    }
+
+    /**
+     * Get the count of the keywords, the keyword indexes are below it.
+     *
+     * @return keyword count
+     */
+    public int size() {
+        return keywords.length;
+    }
+
+    /**
+     * Get the length of the longest keyword.
+     *
+     * @return max keyword length, 0 if no keyword
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Get the keyword text.
+     *
+     * @param keyword keyword index
+     * @return keyword text
+     */
+    public String getKeyword(int keyword) {
+        return keywords[keyword];
+    }
+
+    /**
+     * Get the marker type of the keyword.
+     *
+     * @param keyword keyword index
+     * @return {@link BraceTokenTypes#KEYWORD_LBRACE} or {@link BraceTokenTypes#KEYWORD_RBRACE}
+     */
+    public IElementType getType(int keyword) {
+        return kinds[keyword] == BraceTokenSnapshot.LBRACE ?
+                BraceTokenTypes.KEYWORD_LBRACE : BraceTokenTypes.KEYWORD_RBRACE;
+    }
+
+    /**
+     * Get the kind of the keyword.
+     *
+     * @param keyword keyword index
+     * @return {@link BraceTokenSnapshot#LBRACE} or {@link BraceTokenSnapshot#RBRACE}
+     */
+    public byte getKind(int keyword) {
+        return kinds[keyword];
+    }
+
+    /**
+     * Check if the two keywords are paired.
+     *
+     * @param leftKeyword left keyword index
+     * @param rightKeyword right keyword index
+     * @return is paired
+     */
+    public boolean isPair(int leftKeyword, int rightKeyword) {
+        return pairTable[leftKeyword][rightKeyword];
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, String keyword) {
+        if (start + keyword.length() > text.length())
+            return false;
+        for (int i = 0; i < keyword.length(); i++) {
+            if (text.charAt(start + i) != keyword.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.qeesung.component;
+
+import com.intellij.openapi.util.TextRange;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.util.MemoryEstimate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cache of the found brace pairs, keyed by the range in which the caret finds
+ * the same pairs, and discarded when the document, the caret shape or the levels
+ * are changed. The cache is shared by the editors of the document that share
+ * the brace token snapshot.
+ */
+class BracePairCache implements MemoryEstimate {
+    private static final int MAX_ENTRIES = 256;
+    // tree map entry, boxed offset, range and the list
+    private static final int ENTRY_BYTES = 120;
+    // brace pair with its two braces
+    private static final int PAIR_BYTES = 96;
+
+    private final TreeMap<Integer, Entry> entries = new TreeMap<>();
+    private long modificationStamp = -1;
+    private boolean isBlockCaret;
+    private int maxLevels;
+
+    /**
+     * Get the cached pairs of the offset.
+     *
+     * @param modificationStamp document modification stamp
+     * @param isBlockCaret is block caret
+     * @param maxLevels max levels, 0 if only the closest pair is found
+     * @param offset caret offset
+     * @return the brace pairs innermost first, null if not cached
+     */
+    synchronized List<BracePair> get(long modificationStamp, boolean isBlockCaret, int maxLevels, int offset) {
+        if (!isValid(modificationStamp, isBlockCaret, maxLevels))
+            return null;
+        Map.Entry<Integer, Entry> entry = entries.floorEntry(offset);
+        if (entry == null || !entry.getValue().range.containsOffset(offset) ||
+                entry.getValue().range.getEndOffset() == offset)
+            return null;
+        return entry.getValue().bracePairs;
+    }
+
+    /**
+     * Check if the pairs of the offset are cached.
+     *
+     * @param modificationStamp document modification stamp
+     * @param isBlockCaret is block caret
+     * @param maxLevels max levels, 0 if only the closest pair is found
+     * @param offset caret offset
+     * @return is cached
+     */
+    synchronized boolean contains(long modificationStamp, boolean isBlockCaret, int maxLevels, int offset) {
+        return get(modificationStamp, isBlockCaret, maxLevels, offset) != null;
+    }
+
+    /**
+     * Cache the pairs found in the range, the cache of the other document version,
+     * caret shape or levels is discarded.
+     *
+     * @param modificationStamp document modification stamp
+     * @param isBlockCaret is block caret
+     * @param maxLevels max levels, 0 if only the closest pair is found
+     * @param range range in which the caret finds the same pairs
+     * @param bracePairs the brace pairs innermost first
+     */
+    synchronized void put(long modificationStamp, boolean isBlockCaret, int maxLevels,
+                          TextRange range, List<BracePair> bracePairs) {
+        if (!isValid(modificationStamp, isBlockCaret, maxLevels)) {
+            entries.clear();
+            this.modificationStamp = modificationStamp;
+            this.isBlockCaret = isBlockCaret;
+            this.maxLevels = maxLevels;
+        }
+        if (entries.size() >= MAX_ENTRIES)
+            entries.clear();
+        entries.put(range.getStartOffset(), new Entry(range, bracePairs));
+    }
+
+    /**
+     * Discard all the cached pairs.
+     */
+    synchronized void clear() {
+        entries.clear();
+        modificationStamp = -1;
+    }
+
+    /**
+     * Estimate the bytes of the cached entries and pairs.
+     *
+     * @return estimated bytes
+     */
+    @Override
+    public synchronized long estimateBytes() {
+        long bytes = OBJECT_HEADER_BYTES * 2;
+        for (Entry entry : entries.values())
+            bytes += ENTRY_BYTES + entry.bracePairs.size() * (long) PAIR_BYTES;
+        return bytes;
+    }
+
+    private boolean isValid(long modificationStamp, boolean isBlockCaret, int maxLevels) {
+        return this.modificationStamp == modificationStamp &&
+                this.isBlockCaret == isBlockCaret &&
+                this.maxLevels == maxLevels;
+    }
+
+    private static class Entry {
+        private final TextRange range;
+        private final List<BracePair> bracePairs;
+
+        private Entry(TextRange range, List<BracePair> bracePairs) {
+            this.range = range;
+            this.bracePairs = bracePairs;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.qeesung.component;
+
+/**
+ * Frame limiter of the caret moves during the mouse drag or the scrolling, the
+ * caret moves at the input event rate during the gesture and is highlighted at
+ * most once per frame.
+ * <p>
+ * The limiter only decides, the caller highlights and schedules the pending frame,
+ * so the decisions can be replayed against a recorded event trace.
+ */
+class GestureFrameLimiter {
+    /**
+     * The move is coalesced into the pending frame.
+     */
+    static final int COALESCED = -1;
+    /**
+     * The move is highlighted at once.
+     */
+    static final int HIGHLIGHT_NOW = 0;
+
+    private final int frameInterval;
+    private final int scrollTimeout;
+    private boolean dragging;
+    private long lastScrollTime = Long.MIN_VALUE / 2;
+    private long lastFrameTime = Long.MIN_VALUE / 2;
+    private int coalescedMoves;
+
+    /**
+     * Constructor.
+     *
+     * @param frameInterval min interval between two highlights in milliseconds
+     * @param scrollTimeout time the gesture stays active after the last scroll in milliseconds
+     */
+    GestureFrameLimiter(int frameInterval, int scrollTimeout) {
+        this.frameInterval = frameInterval;
+        this.scrollTimeout = scrollTimeout;
+    }
+
+    void dragged() {
+        dragging = true;
+    }
+
+    void scrolled(long now) {
+        lastScrollTime = now;
+    }
+
+    /**
+     * End the gesture when the mouse is released.
+     *
+     * @return true if a drag is ended, the final position should be highlighted at once
+     */
+    boolean released() {
+        if (!dragging)
+            return false;
+        dragging = false;
+        lastScrollTime = Long.MIN_VALUE / 2;
+        return true;
+    }
+
+    boolean isActive(long now) {
+        return dragging || now - lastScrollTime < scrollTimeout;
+    }
+
+    /**
+     * Decide the highlight of the caret move during the gesture.
+     *
+     * @param now current time in milliseconds
+     * @param framePending is a frame scheduled and not highlighted yet
+     * @return {@link #HIGHLIGHT_NOW}, {@link #COALESCED}, or the delay of the frame to
+     * schedule in milliseconds
+     */
+    int move(long now, boolean framePending) {
+        if (framePending) {
+            coalescedMoves++;
+            return COALESCED;
+        }
+        long wait = lastFrameTime + frameInterval - now;
+        if (wait <= 0) {
+            lastFrameTime = now;
+            return HIGHLIGHT_NOW;
+        }
+        // the moves of a cancelled frame are dropped
+        coalescedMoves = 0;
+        return (int) wait;
+    }
+
+    /**
+     * Start the scheduled frame.
+     *
+     * @param now current time in milliseconds
+     * @return count of the moves coalesced into the frame
+     */
+    int frame(long now) {
+        lastFrameTime = now;
+        int moves = coalescedMoves;
+        coalescedMoves = 0;
+        return moves;
+    }
+
+    int getCoalescedMoves() {
+        return coalescedMoves;
+    }
+}
@@ -2,25 +2,48 @@ package io.github.qeesung.component;
 
 import com.intellij.ide.plugins.IdeaPluginDescriptor;
 import com.intellij.ide.plugins.PluginManager;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ApplicationComponent;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
 import com.intellij.openapi.editor.event.EditorFactoryEvent;
 import com.intellij.openapi.editor.event.EditorFactoryListener;
 import com.intellij.openapi.extensions.PluginId;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.util.containers.ContainerUtil;
+import io.github.qeesung.adapter.DocumentMatchingState;
+import io.github.qeesung.highlighter.BracePalette;
+import io.github.qeesung.highlighter.HighlightEditorKind;
 import io.github.qeesung.setting.HighlightBracketPairSettings;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Highlight bracket pair application component, responsible for some initialization operations,
  * such as register the editor event listener , check the plugin update and so on.
  */
 public class HighlightBracketPairApplicationComponent implements ApplicationComponent, EditorFactoryListener {
-    private Map<Editor, HighlightEditorComponent> editorHighlightEditorComponentMap;
+    private static final Key<HighlightEditorComponent> HIGHLIGHT_EDITOR_COMPONENT =
+            Key.create("io.github.qeesung.HighlightEditorComponent");
+    private static final Key<Disposable> HIGHLIGHT_EDITOR_DISPOSABLE =
+            Key.create("io.github.qeesung.HighlightEditorDisposable");
+
+    /**
+     * Highlighted editors, weakly referenced so the set itself does not keep an editor
+     * reachable, the component and the listeners it adds to the document are tied to
+     * the editor disposable and dropped when the editor is released.
+     */
+    private Set<Editor> highlightedEditors;
     /**
      * Plugin has been updated with the current run.
      */
@@ -61,6 +84,8 @@ public class HighlightBracketPairApplicationComponent implements ApplicationComp
     /**
      * Invoked when the editor is created, and establish the relationship
      * between the {@link Editor} editor and {@link HighlightEditorComponent} component.
+     * The component is registered under a disposable of the editor, disposed when the
+     * editor is released.
      *
      * @param editorFactoryEvent editor factory event.
      */
@@ -70,9 +95,13 @@ public class HighlightBracketPairApplicationComponent implements ApplicationComp
         if (editor.getProject() == null) {
             return;
         }
+        HighlightEditorKind.classifyCreatedEditor(editor);
+        Disposable editorDisposable = Disposer.newDisposable();
         HighlightEditorComponent highlightEditorComponent =
-                new HighlightEditorComponent(editor);
-        editorHighlightEditorComponentMap.put(editor, highlightEditorComponent);
+                new HighlightEditorComponent(editor, editorDisposable);
+        editor.putUserData(HIGHLIGHT_EDITOR_DISPOSABLE, editorDisposable);
+        editor.putUserData(HIGHLIGHT_EDITOR_COMPONENT, highlightEditorComponent);
+        highlightedEditors.add(editor);
     }
 
     /**
@@ -84,12 +113,92 @@ public class HighlightBracketPairApplicationComponent implements ApplicationComp
      */
     @Override
     public void editorReleased(@NotNull EditorFactoryEvent editorFactoryEvent) {
-        HighlightEditorComponent editorComponent =
-                editorHighlightEditorComponentMap.remove(editorFactoryEvent.getEditor());
-        if (editorComponent == null) {
+        releaseEditor(editorFactoryEvent.getEditor());
+    }
+
+    private void releaseEditor(Editor editor) {
+        highlightedEditors.remove(editor);
+        Disposable editorDisposable = editor.getUserData(HIGHLIGHT_EDITOR_DISPOSABLE);
+        if (editorDisposable == null) {
+            return;
+        }
+        editor.putUserData(HIGHLIGHT_EDITOR_DISPOSABLE, null);
+        editor.putUserData(HIGHLIGHT_EDITOR_COMPONENT, null);
+        Disposer.dispose(editorDisposable);
+    }
+
+    /**
+     * Get the highlight component of the editor.
+     *
+     * @param editor editor
+     * @return highlight editor component, null if the editor is not highlighted
+     */
+    public HighlightEditorComponent getEditorComponent(Editor editor) {
+        return editor.getUserData(HIGHLIGHT_EDITOR_COMPONENT);
+    }
+
+    /**
+     * Get the components of all the highlighted editors, the disposed editors
+     * whose release is missed are released.
+     *
+     * @return highlight editor components
+     */
+    private List<HighlightEditorComponent> getEditorComponents() {
+        List<HighlightEditorComponent> editorComponents = new ArrayList<>();
+        for (Editor editor : new ArrayList<>(highlightedEditors)) {
+            HighlightEditorComponent editorComponent = getEditorComponent(editor);
+            if (editor.isDisposed() || editorComponent == null)
+                releaseEditor(editor);
+            else
+                editorComponents.add(editorComponent);
+        }
+        return editorComponents;
+    }
+
+    /**
+     * Highlight the current pair of all the opened editors again,
+     * invoked when the settings are changed.
+     */
+    public void refreshAllEditors() {
+        for (HighlightEditorComponent editorComponent : getEditorComponents()) {
+            editorComponent.clearCachedPairs();
+            editorComponent.highlightEditorCurrentPair(editorComponent.getEditor());
+        }
+        enforceMemoryBudget();
+    }
+
+    /**
+     * Keep the estimated matching state of all the editors under the memory budget,
+     * the editors of one document share the state, so the documents are released
+     * from the least recently focused one, the last focused document is kept.
+     * Invoked in the event dispatch thread when an editor is focused.
+     */
+    public void enforceMemoryBudget() {
+        long budget = HighlightBracketPairSettings.getInstance().getMemoryBudgetBytes();
+        if (budget <= 0)
+            return;
+        Map<Document, DocumentCaches> documentCaches = new HashMap<>();
+        for (HighlightEditorComponent editorComponent : getEditorComponents()) {
+            Document document = editorComponent.getEditor().getDocument();
+            DocumentCaches caches = documentCaches.get(document);
+            if (caches == null) {
+                caches = new DocumentCaches(DocumentMatchingState.getInstance(document));
+                documentCaches.put(document, caches);
+            }
+            caches.add(editorComponent);
+        }
+
+        long totalBytes = 0;
+        for (DocumentCaches caches : documentCaches.values())
+            totalBytes += caches.bytes;
+        if (totalBytes <= budget)
             return;
+        List<DocumentCaches> releaseOrder = new ArrayList<>(documentCaches.values());
+        releaseOrder.sort((l, r) -> Long.compare(l.lastFocusTime, r.lastFocusTime));
+        for (int i = 0; i < releaseOrder.size() - 1 && totalBytes > budget; i++) {
+            releaseOrder.get(i).release();
+            totalBytes -= releaseOrder.get(i).bytes;
         }
-        editorComponent.dispose();
     }
 
     /**
@@ -98,9 +207,12 @@ public class HighlightBracketPairApplicationComponent implements ApplicationComp
      */
     @Override
     public void initComponent() {
-        editorHighlightEditorComponentMap = new HashMap<>();
+        highlightedEditors = Collections.newSetFromMap(ContainerUtil.createConcurrentWeakMap());
         EditorFactory.getInstance().
                 addEditorFactoryListener(this, ApplicationManager.getApplication());
+        // the palettes are built again from the changed or edited scheme
+        ApplicationManager.getApplication().getMessageBus().connect(ApplicationManager.getApplication())
+                .subscribe(EditorColorsManager.TOPIC, scheme -> BracePalette.invalidateAll());
 
         final HighlightBracketPairSettings settings = HighlightBracketPairSettings.getInstance();
         updated = !getPlugin().getVersion().equals(settings.getVersion());
@@ -116,10 +228,10 @@ public class HighlightBracketPairApplicationComponent implements ApplicationComp
      */
     @Override
     public void disposeComponent() {
-        for (HighlightEditorComponent editorComponent : editorHighlightEditorComponentMap.values()) {
-            editorComponent.dispose();
+        for (Editor editor : new ArrayList<>(highlightedEditors)) {
+            releaseEditor(editor);
         }
-        editorHighlightEditorComponentMap.clear();
+        highlightedEditors.clear();
     }
 
     /**
@@ -151,4 +263,32 @@ public class HighlightBracketPairApplicationComponent implements ApplicationComp
         return PluginManager.getPlugin(
                 PluginId.getId("io.github.qeesung.component.HighlightBracketPair"));
     }
+
+    /**
+     * Matching state of the highlighted editors of one document.
+     */
+    private static class DocumentCaches {
+        private final DocumentMatchingState documentState;
+        private final List<HighlightEditorComponent> editorComponents = new ArrayList<>();
+        private long bytes;
+        private long lastFocusTime = Long.MIN_VALUE;
+
+        private DocumentCaches(DocumentMatchingState documentState) {
+            this.documentState = documentState;
+            this.bytes = documentState == null ? 0 : documentState.estimateBytes();
+        }
+
+        private void add(HighlightEditorComponent editorComponent) {
+            editorComponents.add(editorComponent);
+            bytes += editorComponent.estimateBytes();
+            lastFocusTime = Math.max(lastFocusTime, editorComponent.getLastFocusTime());
+        }
+
+        private void release() {
+            for (HighlightEditorComponent editorComponent : editorComponents)
+                editorComponent.releaseCaches();
+            if (documentState != null)
+                documentState.releaseValues();
+        }
+    }
 }
@@ -1,31 +1,105 @@
 package io.github.qeesung.component;
 
+import com.intellij.ide.PowerSaveMode;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.event.CaretEvent;
 import com.intellij.openapi.editor.event.CaretListener;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.EditorMouseAdapter;
+import com.intellij.openapi.editor.event.EditorMouseEvent;
+import com.intellij.openapi.editor.event.EditorMouseMotionListener;
+import com.intellij.openapi.editor.event.VisibleAreaEvent;
+import com.intellij.openapi.editor.event.VisibleAreaListener;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.ex.FocusChangeListener;
+import com.intellij.openapi.editor.ex.PrioritizedDocumentListener;
+import com.intellij.openapi.editor.impl.EditorDocumentPriorities;
+import com.intellij.openapi.editor.markup.MarkupModel;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.util.Alarm;
+import io.github.qeesung.adapter.BraceTokenSnapshotBuilder;
+import io.github.qeesung.adapter.DocumentMatchingState;
+import io.github.qeesung.adapter.InjectedFragmentCache;
 import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.brace.BraceTokenTypes;
 import io.github.qeesung.highlighter.BraceHighlighter;
+import io.github.qeesung.highlighter.BracePairRenderer;
 import io.github.qeesung.highlighter.BraceHighlighterFactory;
+import io.github.qeesung.highlighter.HighlightEditorKind;
+import io.github.qeesung.profiler.BraceMatchingEvents;
+import io.github.qeesung.setting.HighlightBracketPairSettings;
+import io.github.qeesung.setting.HighlightPolicy;
 import io.github.qeesung.util.Pair;
 
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Highlight editor component to highlight the most left brace
  * and most right brace when the current caret is change.
  */
-public class HighlightEditorComponent implements CaretListener {
+public class HighlightEditorComponent implements CaretListener, PrioritizedDocumentListener,
+        FocusChangeListener, Disposable {
+    private static final String UPDATE_MODE_CLEAR = "clear";
+    private static final String UPDATE_MODE_RENDERER = "renderer";
+    private static final String UPDATE_MODE_RANGE_HIGHLIGHTERS = "range highlighters";
+    private static final int PREFETCH_IDLE_DELAY = 300;
+    private static final int PREFETCH_GAPS = 8;
+    private static final int FRAME_INTERVAL = 16;
+    private static final int SCROLL_GESTURE_TIMEOUT = 100;
+    private static final Key<BracePairCache> BLOCK_CARET_PAIR_CACHE =
+            Key.create("io.github.qeesung.BlockCaretPairCache");
+    private static final Key<BracePairCache> LINE_CARET_PAIR_CACHE =
+            Key.create("io.github.qeesung.LineCaretPairCache");
+
     private final Editor editor;
     private List<RangeHighlighter> highlighterList = new ArrayList<>();
     private ExtraHighlightTrigger extraHighlightTrigger;
+    private final GestureTracker gestureTracker = new GestureTracker();
+    private final GestureFrameLimiter frameLimiter = new GestureFrameLimiter(FRAME_INTERVAL, SCROLL_GESTURE_TIMEOUT);
+    private final Alarm updateAlarm;
+    private final Alarm prefetchAlarm;
+    private final BracePairCache bracePairCache = new BracePairCache();
+    private final BracePairRenderer bracePairRenderer;
+    private int updateGeneration;
+    private volatile int prefetchGeneration;
+    private Pair<BraceHighlighter, List<BracePair>> appliedBracePairs;
+    private int appliedOffset;
+    private long appliedModificationStamp;
+    private boolean appliedBlockCaret;
+    private int keptEditStart = BraceHighlighter.NON_OFFSET;
+    private int keptEditEnd = BraceHighlighter.NON_OFFSET;
+    private volatile long lastFocusTime = System.nanoTime();
+    private Object coalescingEvent;
+    private boolean disposed;
 
+    /**
+     * Remove the listeners not tied to the editor disposable and detach the editor
+     * from the document state, disposing the component again has no effect.
+     */
     public void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
         editor.getCaretModel().removeCaretListener(this);
+        DocumentMatchingState.detach(editor);
         editor.getContentComponent().removeKeyListener(this.extraHighlightTrigger);
+        editor.removeEditorMouseListener(gestureTracker);
+        editor.removeEditorMouseMotionListener(gestureTracker);
+        editor.getScrollingModel().removeVisibleAreaListener(gestureTracker);
+        bracePairRenderer.dispose();
     }
 
     private static class ExtraHighlightTrigger extends KeyAdapter {
@@ -62,11 +136,105 @@ public class HighlightEditorComponent implements CaretListener {
         }
     }
 
-    public HighlightEditorComponent(Editor editor) {
+    /**
+     * Track the mouse drag and the scrolling by the frame limiter, the caret moves
+     * at the input event rate during the gesture.
+     */
+    private class GestureTracker extends EditorMouseAdapter
+            implements EditorMouseMotionListener, VisibleAreaListener {
+        @Override
+        public void mouseDragged(EditorMouseEvent e) {
+            frameLimiter.dragged();
+        }
+
+        @Override
+        public void mouseMoved(EditorMouseEvent e) {
+        }
+
+        @Override
+        public void mouseReleased(EditorMouseEvent e) {
+            if (!frameLimiter.released())
+                return;
+            // apply the final position at once instead of the pending frame
+            updateAlarm.cancelAllRequests();
+            highlightEditorCurrentPair(editor);
+        }
+
+        @Override
+        public void visibleAreaChanged(VisibleAreaEvent e) {
+            frameLimiter.scrolled(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Constructor, the component, its document and focus listeners and its alarms
+     * are registered under the editor disposable, so the document does not keep
+     * the component once the editor is released.
+     *
+     * @param editor editor
+     * @param editorDisposable disposable of the editor, disposed when the editor is released
+     */
+    public HighlightEditorComponent(Editor editor, Disposable editorDisposable) {
         this.editor = editor;
+        Disposer.register(editorDisposable, this);
+        this.updateAlarm = new Alarm(editorDisposable);
+        this.prefetchAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, editorDisposable);
+        this.bracePairRenderer = new BracePairRenderer(editor);
         this.extraHighlightTrigger = new ExtraHighlightTrigger(this);
         this.editor.getContentComponent().addKeyListener(this.extraHighlightTrigger);
         editor.getCaretModel().addCaretListener(this);
+        editor.getDocument().addDocumentListener(this, editorDisposable);
+        editor.addEditorMouseListener(gestureTracker);
+        editor.addEditorMouseMotionListener(gestureTracker);
+        editor.getScrollingModel().addVisibleAreaListener(gestureTracker);
+        DocumentMatchingState.attach(editor);
+        if (editor instanceof EditorEx)
+            ((EditorEx) editor).addFocusListener(this, editorDisposable);
+    }
+
+    /**
+     * Record the focus time, and keep the cached state of all the editors
+     * under the memory budget, the least recently focused are released first.
+     *
+     * @param editor focused editor
+     */
+    @Override
+    public void focusGained(Editor editor) {
+        lastFocusTime = System.nanoTime();
+        HighlightBracketPairApplicationComponent.getInstance().enforceMemoryBudget();
+    }
+
+    @Override
+    public void focusLost(Editor editor) {
+    }
+
+    /**
+     * Get the time the editor is last focused or created.
+     *
+     * @return last focus time in nanoseconds
+     */
+    public long getLastFocusTime() {
+        return lastFocusTime;
+    }
+
+    /**
+     * Estimate the bytes of the matching state owned by this editor, the state
+     * shared with the document is estimated by the {@link DocumentMatchingState}.
+     *
+     * @return estimated bytes
+     */
+    public long estimateBytes() {
+        return bracePairCache.estimateBytes() + BraceTokenSnapshotBuilder.estimateEditorBytes(editor);
+    }
+
+    /**
+     * Release the matching state owned by this editor, the current highlight
+     * is kept and the state is built again on the next caret move.
+     */
+    public void releaseCaches() {
+        cancelPrefetch();
+        bracePairCache.clear();
+        BraceTokenSnapshotBuilder.releaseEditorSnapshot(editor);
     }
 
     @Override
@@ -75,6 +243,85 @@ public class HighlightEditorComponent implements CaretListener {
         highlightEditorCurrentPair(editor);
     }
 
+    /**
+     * Get the document listener priority, the edit is inspected before the caret
+     * model moves the caret of the edit.
+     *
+     * @return priority
+     */
+    @Override
+    public int getPriority() {
+        return EditorDocumentPriorities.CARET_MODEL - 1;
+    }
+
+    @Override
+    public void beforeDocumentChange(DocumentEvent e) {
+        // ignore the event
+    }
+
+    /**
+     * Keep the highlighted pairs if the edit is inside the innermost pair and can
+     * not change the brace and string tokens, the range highlighters are shifted by
+     * the document, and the pairs are shifted here, so the caret move of the edit
+     * does not start a search.
+     *
+     * @param e document event
+     */
+    @Override
+    public void documentChanged(DocumentEvent e) {
+        InjectedFragmentCache.documentChanged(editor, e);
+        keptEditStart = BraceHighlighter.NON_OFFSET;
+        keptEditEnd = BraceHighlighter.NON_OFFSET;
+        Pair<BraceHighlighter, List<BracePair>> bracePairs = appliedBracePairs;
+        if (bracePairs == null || editor.isDisposed())
+            return;
+        int editStart = e.getOffset();
+        int oldEditEnd = editStart + e.getOldLength();
+        BracePair innermostPair = bracePairs.getRight().isEmpty() ?
+                BraceHighlighter.EMPTY_BRACE_PAIR : bracePairs.getRight().get(0);
+        boolean found = innermostPair.getLeftBrace().getOffset() != BraceHighlighter.NON_OFFSET &&
+                innermostPair.getRightBrace().getOffset() != BraceHighlighter.NON_OFFSET;
+        // the caret of the edit is at the edit, and the edit does not touch the braces
+        if (appliedOffset < editStart || appliedOffset > oldEditEnd ||
+                found && (editStart < innermostPair.getLeftBrace().getOffset() +
+                        innermostPair.getLeftBrace().getText().length() ||
+                        oldEditEnd > innermostPair.getRightBrace().getOffset()) ||
+                !bracePairs.getLeft().isStructureSafeEdit(e.getDocument().getImmutableCharSequence(),
+                        editStart, e.getOldFragment(), e.getNewFragment())) {
+            appliedBracePairs = null;
+            return;
+        }
+
+        int delta = e.getNewLength() - e.getOldLength();
+        List<BracePair> shiftedPairs = new ArrayList<>(bracePairs.getRight().size());
+        for (BracePair bracePair : bracePairs.getRight())
+            shiftedPairs.add(shiftBracePair(bracePair, oldEditEnd, delta));
+        appliedBracePairs = new Pair<>(bracePairs.getLeft(), shiftedPairs);
+        appliedModificationStamp = e.getDocument().getModificationStamp();
+        keptEditStart = editStart;
+        keptEditEnd = editStart + e.getNewLength();
+        if (HighlightBracketPairSettings.getInstance().isCustomRenderer())
+            bracePairRenderer.update(bracePairs.getLeft(), shiftedPairs);
+    }
+
+    /**
+     * Shift the braces at or after the edit end by the length delta.
+     */
+    private static BracePair shiftBracePair(BracePair bracePair, int editEnd, int delta) {
+        int leftOffset = bracePair.getLeftBrace().getOffset();
+        int rightOffset = bracePair.getRightBrace().getOffset();
+        if (delta == 0 || rightOffset == BraceHighlighter.NON_OFFSET || rightOffset < editEnd)
+            return bracePair;
+        return new BracePair.BracePairBuilder().
+                leftType(bracePair.getLeftBrace().getElementType()).
+                rightType(bracePair.getRightBrace().getElementType()).
+                leftText(bracePair.getLeftBrace().getText()).
+                rightText(bracePair.getRightBrace().getText()).
+                leftOffset(leftOffset != BraceHighlighter.NON_OFFSET && leftOffset >= editEnd ?
+                        leftOffset + delta : leftOffset).
+                rightOffset(rightOffset + delta).build();
+    }
+
     @Override
     public void caretAdded(CaretEvent e) {
         // ignore the event
@@ -86,26 +333,349 @@ public class HighlightEditorComponent implements CaretListener {
     }
 
     /**
-     * Highlight the current pair.
+     * Highlight the current pair according to the highlight policy of the editor kind,
+     * delayed by the debounce delay if configured.
      * @param editor editor
      */
     public void highlightEditorCurrentPair(Editor editor) {
+        HighlightBracketPairSettings settings = HighlightBracketPairSettings.getInstance();
+        HighlightPolicy policy = settings.getHighlightPolicy(HighlightEditorKind.of(editor));
+        cancelPrefetch();
+        if (isKeptByEdit(editor))
+            return;
+        if (policy == HighlightPolicy.OFF) {
+            updateAlarm.cancelAllRequests();
+            updateGeneration++;
+            applyHighlight(null);
+            appliedBracePairs = null;
+            return;
+        }
+        if (policy == HighlightPolicy.THROTTLED) {
+            // keep the pending update, the caret following the output tail
+            // is highlighted at most once per interval
+            if (updateAlarm.isEmpty())
+                updateAlarm.addRequest(() -> updateHighlight(editor),
+                        Math.max(settings.getDebounceDelay(), settings.getThrottleInterval()));
+            return;
+        }
+
+        int debounceDelay = settings.getDebounceDelay();
+        long now = System.currentTimeMillis();
+        if (debounceDelay == 0 && frameLimiter.isActive(now)) {
+            highlightFrame(editor, now);
+            return;
+        }
+        updateAlarm.cancelAllRequests();
+        if (debounceDelay > 0) {
+            updateAlarm.addRequest(() -> updateHighlight(editor), debounceDelay);
+        } else {
+            updateHighlight(editor);
+        }
+    }
+
+    /**
+     * Highlight at most once per frame during the drag or scroll gesture, the caret
+     * moves within one frame are coalesced into the pending update, which highlights
+     * the caret of the last move, so the final position is always applied. The
+     * coalesced moves are recorded by one event when the frame is highlighted.
+     */
+    private void highlightFrame(Editor editor, long now) {
+        int wait = frameLimiter.move(now, !updateAlarm.isEmpty());
+        if (wait == GestureFrameLimiter.COALESCED) {
+            if (frameLimiter.getCoalescedMoves() == 1)
+                coalescingEvent = BraceMatchingEvents.beginFrameCoalescing();
+            return;
+        }
+        if (wait == GestureFrameLimiter.HIGHLIGHT_NOW) {
+            updateHighlight(editor);
+            return;
+        }
+        coalescingEvent = null;
+        updateAlarm.addRequest(() -> {
+            int coalescedMoves = frameLimiter.frame(System.currentTimeMillis());
+            if (coalescedMoves > 0)
+                BraceMatchingEvents.commitFrameCoalescing(coalescingEvent,
+                        editor.getCaretModel().getOffset(), coalescedMoves);
+            coalescingEvent = null;
+            updateHighlight(editor);
+        }, wait);
+    }
+
+    /**
+     * Check if the caret is moved by the edit that kept the highlighted pairs,
+     * the caret is then still in the same gap of the innermost pair.
+     */
+    private boolean isKeptByEdit(Editor editor) {
+        int editStart = keptEditStart;
+        int editEnd = keptEditEnd;
+        keptEditStart = BraceHighlighter.NON_OFFSET;
+        keptEditEnd = BraceHighlighter.NON_OFFSET;
+        int offset = editor.getCaretModel().getOffset();
+        if (appliedBracePairs == null || editStart == BraceHighlighter.NON_OFFSET ||
+                offset < editStart || offset > editEnd ||
+                appliedModificationStamp != editor.getDocument().getModificationStamp())
+            return false;
+        // drop the pending update of the caret before the edit
+        updateAlarm.cancelAllRequests();
+        updateGeneration++;
+        appliedOffset = offset;
+        return true;
+    }
+
+    /**
+     * Find the current pair in the current thread or in the background thread
+     * according to the settings, and highlight it in the event dispatch thread.
+     * The background read action gives way to the write action, and the pair is
+     * found again after it.
+     * @param editor editor
+     */
+    private void updateHighlight(Editor editor) {
+        if (editor.isDisposed())
+            return;
+        final int offset = editor.getCaretModel().getOffset();
+        final int generation = ++updateGeneration;
+        if (!HighlightBracketPairSettings.getInstance().isBackgroundComputation()) {
+            Pair<BraceHighlighter, List<BracePair>> bracePairs = findBracePairs(editor, offset);
+            applyHighlight(bracePairs);
+            recordAppliedBracePairs(editor, offset, bracePairs);
+            schedulePrefetch(editor, offset, bracePairs);
+            return;
+        }
+
+        final Application application = ApplicationManager.getApplication();
+        final long modificationStamp = editor.getDocument().getModificationStamp();
+        application.executeOnPooledThread(() -> {
+            final Ref<Pair<BraceHighlighter, List<BracePair>>> bracePairsRef = Ref.create();
+            final boolean completed = ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(() -> {
+                if (!editor.isDisposed())
+                    bracePairsRef.set(findBracePairs(editor, offset));
+            });
+            application.invokeLater(() -> {
+                if (generation != updateGeneration || editor.isDisposed())
+                    return;
+                // cancelled by the write action, find the pair of the current caret again
+                if (!completed) {
+                    updateHighlight(editor);
+                    return;
+                }
+                // the result is stale if the document is changed
+                if (modificationStamp != editor.getDocument().getModificationStamp())
+                    return;
+                Pair<BraceHighlighter, List<BracePair>> bracePairs = bracePairsRef.get();
+                applyHighlight(bracePairs);
+                recordAppliedBracePairs(editor, offset, bracePairs);
+                schedulePrefetch(editor, offset, bracePairs);
+            });
+        });
+    }
+
+    /**
+     * Record the highlighted pairs with the caret offset, the document version
+     * and the caret shape they are found for.
+     */
+    private void recordAppliedBracePairs(Editor editor, int offset, Pair<BraceHighlighter, List<BracePair>> bracePairs) {
+        appliedBracePairs = bracePairs;
+        appliedOffset = offset;
+        appliedModificationStamp = editor.getDocument().getModificationStamp();
+        appliedBlockCaret = editor.getSettings().isBlockCursor();
+    }
+
+    /**
+     * Get the brace pairs around the caret, the highlighted pairs if they are found
+     * for the current caret and document, otherwise the cached or found pairs.
+     * Invoked in the event dispatch thread.
+     *
+     * @return the highlighter and the brace pairs innermost first, null if not highlighted
+     */
+    public Pair<BraceHighlighter, List<BracePair>> getCaretBracePairs() {
+        if (editor.isDisposed())
+            return null;
         int offset = editor.getCaretModel().getOffset();
+        if (appliedBracePairs != null && appliedOffset == offset &&
+                appliedModificationStamp == editor.getDocument().getModificationStamp() &&
+                appliedBlockCaret == editor.getSettings().isBlockCursor())
+            return appliedBracePairs;
+        return findBracePairs(editor, offset);
+    }
+
+    /**
+     * Find the brace pairs around the offset.
+     * @param editor editor
+     * @param offset caret offset
+     * @return the highlighter and the brace pairs innermost first, null if not highlighted
+     */
+    private Pair<BraceHighlighter, List<BracePair>> findBracePairs(Editor editor, int offset) {
+        Object event = BraceMatchingEvents.beginBracketMatching();
+        HighlightBracketPairSettings settings = HighlightBracketPairSettings.getInstance();
+        long modificationStamp = editor.getDocument().getModificationStamp();
+        boolean isBlockCaret = editor.getSettings().isBlockCursor();
+        int maxLevels = settings.isHighlightEnclosingPairs() ? settings.getEnclosingPairLevels() : 0;
         BraceHighlighter highlighter =
-                BraceHighlighterFactory.getBraceHighlighterInstance(editor);
-        if (highlighter == null)
+                BraceHighlighterFactory.getBraceHighlighterInstance(editor, offset);
+        if (highlighter == null) {
+            BraceMatchingEvents.commitBracketMatching(event, editor.getDocument().getTextLength(), null,
+                    offset, BraceHighlighter.NON_OFFSET, BraceHighlighter.NON_OFFSET, 0,
+                    BraceMatchingEvents.OUTCOME_SKIPPED);
+            return null;
+        }
+
+        BracePairCache bracePairCache = getBracePairCache(editor, isBlockCaret);
+        List<BracePair> cachedPairs = bracePairCache.get(modificationStamp, isBlockCaret, maxLevels, offset);
+        if (cachedPairs != null) {
+            if (event != null)
+                BraceMatchingEvents.commitBracketMatching(event, editor.getDocument().getTextLength(),
+                        highlighter.getLanguageId(), offset, BraceHighlighter.NON_OFFSET,
+                        BraceHighlighter.NON_OFFSET, 0, BraceMatchingEvents.OUTCOME_CACHED);
+            return new Pair<>(highlighter, cachedPairs);
+        }
+
+        List<BracePair> bracePairs;
+        if (settings.isHighlightEnclosingPairs()) {
+            // find the enclosing brace positions in one walk
+            bracePairs = highlighter.findClosetBracePairs(offset, settings.getEnclosingPairLevels());
+        } else {
+            // find the brace positions
+            bracePairs = Collections.singletonList(highlighter.findClosetBracePair(offset));
+        }
+        if (event != null)
+            commitBracketMatchingEvent(event, editor, highlighter, offset, bracePairs);
+        // every caret offset in the range finds the same pairs
+        TextRange range = highlighter.getSamePairsRange(offset);
+        if (range != null)
+            bracePairCache.put(modificationStamp, isBlockCaret, maxLevels, range, bracePairs);
+        return new Pair<>(highlighter, bracePairs);
+    }
+
+    /**
+     * Get the pair cache of the caret shape, shared by the editors of the document
+     * that share the brace token snapshot, otherwise owned by this editor.
+     */
+    private BracePairCache getBracePairCache(Editor editor, boolean isBlockCaret) {
+        DocumentMatchingState documentState = HighlightEditorKind.of(editor).isDocumentStateShared() ?
+                DocumentMatchingState.getInstance(editor.getDocument()) : null;
+        if (documentState == null)
+            return bracePairCache;
+        return documentState.getOrCreateValue(isBlockCaret ? BLOCK_CARET_PAIR_CACHE : LINE_CARET_PAIR_CACHE,
+                BracePairCache::new);
+    }
+
+    /**
+     * Find the pairs of the offsets where the caret likely goes next in the
+     * background once the editor is idle, the prefetch is cancelled by the next
+     * caret move and by the write action, and the result is dropped if the
+     * document is changed.
+     * @param editor editor
+     * @param offset caret offset
+     * @param bracePairs the highlighter and the brace pairs found at the offset
+     */
+    private void schedulePrefetch(Editor editor, int offset, Pair<BraceHighlighter, List<BracePair>> bracePairs) {
+        cancelPrefetch();
+        if (bracePairs == null || PowerSaveMode.isEnabled() ||
+                HighlightBracketPairSettings.getInstance().getHighlightPolicy(HighlightEditorKind.of(editor))
+                        != HighlightPolicy.FULL)
             return;
+        final int generation = prefetchGeneration;
+        final long modificationStamp = editor.getDocument().getModificationStamp();
+        final boolean isBlockCaret = editor.getSettings().isBlockCursor();
+        final BracePair innermostPair = bracePairs.getRight().isEmpty() ? null : bracePairs.getRight().get(0);
+        prefetchAlarm.addRequest(() -> ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(() -> {
+            if (editor.isDisposed() || modificationStamp != editor.getDocument().getModificationStamp())
+                return;
+            HighlightBracketPairSettings settings = HighlightBracketPairSettings.getInstance();
+            int maxLevels = settings.isHighlightEnclosingPairs() ? settings.getEnclosingPairLevels() : 0;
+            for (int neighbourOffset : bracePairs.getLeft().getNeighbourOffsets(offset, innermostPair, PREFETCH_GAPS)) {
+                ProgressManager.checkCanceled();
+                // stop once the caret or the document is changed
+                if (generation != prefetchGeneration || editor.isDisposed() ||
+                        modificationStamp != editor.getDocument().getModificationStamp())
+                    return;
+                if (!getBracePairCache(editor, isBlockCaret).contains(
+                        modificationStamp, isBlockCaret, maxLevels, neighbourOffset))
+                    findBracePairs(editor, neighbourOffset);
+            }
+        }), PREFETCH_IDLE_DELAY);
+    }
+
+    private void cancelPrefetch() {
+        prefetchGeneration++;
+        prefetchAlarm.cancelAllRequests();
+    }
+
+    /**
+     * Discard the cached pairs, invoked when the settings are changed.
+     */
+    public void clearCachedPairs() {
+        bracePairCache.clear();
+        getBracePairCache(editor, true).clear();
+        getBracePairCache(editor, false).clear();
+    }
+
+    /**
+     * Commit the bracket matching event with the innermost pair.
+     */
+    private static void commitBracketMatchingEvent(Object event, Editor editor, BraceHighlighter highlighter,
+                                                   int offset, List<BracePair> bracePairs) {
+        BracePair innermostPair = bracePairs.isEmpty() ? BraceHighlighter.EMPTY_BRACE_PAIR : bracePairs.get(0);
+        int leftOffset = innermostPair.getLeftBrace().getOffset();
+        int rightOffset = innermostPair.getRightBrace().getOffset();
+        boolean found = leftOffset != BraceHighlighter.NON_OFFSET && rightOffset != BraceHighlighter.NON_OFFSET;
+        String outcome = !found ? BraceMatchingEvents.OUTCOME_NO_PAIR :
+                innermostPair.getLeftBrace().getElementType() == BraceTokenTypes.DOUBLE_QUOTE ?
+                        BraceMatchingEvents.OUTCOME_STRING : BraceMatchingEvents.OUTCOME_PAIR;
+        BraceMatchingEvents.commitBracketMatching(event, editor.getDocument().getTextLength(),
+                highlighter.getLanguageId(), offset,
+                found ? offset - leftOffset : BraceHighlighter.NON_OFFSET,
+                found ? rightOffset - offset : BraceHighlighter.NON_OFFSET,
+                highlighter.getVisitedTokens(), outcome);
+    }
+
+    /**
+     * Erase the old highlighters and highlight the brace pairs.
+     * @param bracePairs the highlighter and the brace pairs innermost first
+     */
+    private void applyHighlight(Pair<BraceHighlighter, List<BracePair>> bracePairs) {
+        Object event = BraceMatchingEvents.beginHighlightUpdate();
         // clear the high lighter
-        highlighter.eraseHighlight(highlighterList);
+        eraseHighlight();
+        if (bracePairs == null) {
+            bracePairRenderer.clear();
+            BraceMatchingEvents.commitHighlightUpdate(event, UPDATE_MODE_CLEAR, 0);
+            return;
+        }
 
-        // find the brace positions
-        BracePair bracePair = highlighter.findClosetBracePair(offset);
+        // only update the renderer model if painted by the custom renderer
+        if (HighlightBracketPairSettings.getInstance().isCustomRenderer()) {
+            bracePairRenderer.update(bracePairs.getLeft(), bracePairs.getRight());
+            BraceMatchingEvents.commitHighlightUpdate(event, UPDATE_MODE_RENDERER, bracePairs.getRight().size());
+            return;
+        }
+        bracePairRenderer.clear();
 
         // high light the brace
-        Pair<RangeHighlighter, RangeHighlighter> highlighterEntry =
-                highlighter.highlightPair(bracePair);
+        BraceHighlighter highlighter = bracePairs.getLeft();
+        List<BracePair> pairs = bracePairs.getRight();
+        for (int level = 0; level < pairs.size(); level++) {
+            recordHighlighter(highlighter.highlightPair(pairs.get(level), level));
+        }
+        BraceMatchingEvents.commitHighlightUpdate(event, UPDATE_MODE_RANGE_HIGHLIGHTERS, pairs.size());
+    }
 
-        // record the high lighter
+    /**
+     * Remove all the recorded high lighters.
+     */
+    private void eraseHighlight() {
+        MarkupModel markupModel = editor.getMarkupModel();
+        for (RangeHighlighter highlighter : highlighterList) {
+            markupModel.removeHighlighter(highlighter);
+        }
+        highlighterList.clear();
+    }
+
+    /**
+     * Record the high lighter to be erased next time.
+     * @param highlighterEntry left and right highlighter
+     */
+    private void recordHighlighter(Pair<RangeHighlighter, RangeHighlighter> highlighterEntry) {
         if (highlighterEntry != null) {
             highlighterList.add(highlighterEntry.getLeft());
             highlighterList.add(highlighterEntry.getRight());
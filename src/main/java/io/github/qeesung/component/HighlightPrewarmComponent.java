@@ -0,0 +1,157 @@
+package io.github.qeesung.component;
+
+import com.intellij.ide.PowerSaveMode;
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.TextEditor;
+import com.intellij.openapi.fileEditor.impl.EditorHistoryManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import io.github.qeesung.highlighter.BraceHighlighter;
+import io.github.qeesung.highlighter.BraceHighlighterFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Highlight bracket pair project component to build the matching state of all
+ * the restored editors in a bounded background pool after the project is opened,
+ * the selected, most recently used and largest editors first.
+ */
+public class HighlightPrewarmComponent extends AbstractProjectComponent {
+    private static final int MAX_PREWARM_THREADS = 4;
+    private static final int MAX_PREWARM_ATTEMPTS = 3;
+    private static final long PREWARM_RETRY_DELAY = 100;
+
+    private ExecutorService prewarmExecutor;
+    private volatile boolean cancelled;
+
+    protected HighlightPrewarmComponent(Project project) {
+        super(project);
+    }
+
+    /**
+     * Invoked when project opened, and pre-warm the restored editors
+     * once the project is initialized and indexed.
+     */
+    @Override
+    public void projectOpened() {
+        StartupManager.getInstance(myProject).runWhenProjectIsInitialized(() ->
+                DumbService.getInstance(myProject).runWhenSmart(this::prewarmRestoredEditors));
+    }
+
+    /**
+     * Invoked when project closed, and cancel all the pending pre-warming.
+     */
+    @Override
+    public void projectClosed() {
+        cancelled = true;
+        if (prewarmExecutor != null) {
+            prewarmExecutor.shutdownNow();
+            prewarmExecutor = null;
+        }
+    }
+
+    @NotNull
+    @Override
+    public String getComponentName() {
+        return "HighlightBracketPairPrewarm";
+    }
+
+    private void prewarmRestoredEditors() {
+        if (cancelled || myProject.isDisposed() || PowerSaveMode.isEnabled())
+            return;
+        List<Editor> editors = getRestoredEditorsInPriorityOrder();
+        if (editors.isEmpty())
+            return;
+
+        int threads = Math.max(1, Math.min(MAX_PREWARM_THREADS,
+                Math.min(editors.size(), Runtime.getRuntime().availableProcessors() - 1)));
+        prewarmExecutor = createPrewarmExecutor(threads);
+        for (Editor editor : editors) {
+            prewarmExecutor.execute(() -> prewarmEditor(editor));
+        }
+        prewarmExecutor.shutdown();
+    }
+
+    /**
+     * Build the matching state of the editor in the read action, skipped if the
+     * project is closed, the editor is released, or the IDE enters dumb or power save mode.
+     * The read action is cancelled by the pending write action, and tried again after it.
+     */
+    private void prewarmEditor(Editor editor) {
+        for (int attempt = 0; attempt < MAX_PREWARM_ATTEMPTS; attempt++) {
+            if (cancelled || PowerSaveMode.isEnabled() || DumbService.isDumb(myProject))
+                return;
+            boolean completed = ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(() -> {
+                if (cancelled || myProject.isDisposed() || editor.isDisposed())
+                    return;
+                BraceHighlighter highlighter = BraceHighlighterFactory.getBraceHighlighterInstance(editor);
+                if (highlighter != null)
+                    highlighter.warmUp();
+            });
+            if (completed)
+                return;
+            try {
+                TimeUnit.MILLISECONDS.sleep(PREWARM_RETRY_DELAY);
+            } catch (InterruptedException e) {
+                // the pool is shut down with the project
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the opened text editors, the selected editors first, then the most recently used,
+     * then the largest ones.
+     */
+    private List<Editor> getRestoredEditorsInPriorityOrder() {
+        FileEditorManager fileEditorManager = FileEditorManager.getInstance(myProject);
+        Set<FileEditor> selectedEditors = new HashSet<>(Arrays.asList(fileEditorManager.getSelectedEditors()));
+        List<VirtualFile> historyFiles = Arrays.asList(EditorHistoryManager.getInstance(myProject).getFiles());
+        Map<Editor, Integer> priorities = new HashMap<>();
+        for (VirtualFile file : fileEditorManager.getOpenFiles()) {
+            for (FileEditor fileEditor : fileEditorManager.getEditors(file)) {
+                if (!(fileEditor instanceof TextEditor))
+                    continue;
+                // the history files are ordered from the least to the most recently used
+                int priority = selectedEditors.contains(fileEditor) ?
+                        Integer.MAX_VALUE : historyFiles.indexOf(file);
+                priorities.put(((TextEditor) fileEditor).getEditor(), priority);
+            }
+        }
+
+        List<Editor> editors = new ArrayList<>(priorities.keySet());
+        editors.sort((l, r) -> {
+            int compared = Integer.compare(priorities.get(r), priorities.get(l));
+            return compared != 0 ? compared :
+                    Integer.compare(r.getDocument().getTextLength(), l.getDocument().getTextLength());
+        });
+        return editors;
+    }
+
+    private static ExecutorService createPrewarmExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable,
+                    "HighlightBracketPair prewarm " + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
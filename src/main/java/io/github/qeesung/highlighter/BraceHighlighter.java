@@ -2,27 +2,29 @@ package io.github.qeesung.highlighter;
 
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.editor.colors.TextAttributesKey;
-import com.intellij.openapi.editor.ex.EditorEx;
 import com.intellij.openapi.editor.ex.MarkupModelEx;
-import com.intellij.openapi.editor.highlighter.EditorHighlighter;
-import com.intellij.openapi.editor.highlighter.HighlighterIterator;
 import com.intellij.openapi.editor.markup.HighlighterLayer;
 import com.intellij.openapi.editor.markup.HighlighterTargetArea;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
 import com.intellij.openapi.editor.markup.TextAttributes;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.tree.IElementType;
-import io.github.qeesung.adapter.BraceMatchingUtilAdapter;
+import io.github.qeesung.adapter.BraceTokenSnapshotBuilder;
 import io.github.qeesung.brace.Brace;
 import io.github.qeesung.brace.BracePair;
-import io.github.qeesung.setting.HighlightBracketPairSettingsPage;
+import io.github.qeesung.brace.BraceTokenSnapshot;
+import io.github.qeesung.brace.BraceTokenTypes;
+import io.github.qeesung.brace.KeywordPairs;
+import io.github.qeesung.profiler.BraceMatchingEvents;
+import io.github.qeesung.setting.HighlightBracketPairSettings;
 import io.github.qeesung.util.Pair;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static io.github.qeesung.brace.BraceTokenTypes.DOUBLE_QUOTE;
@@ -33,6 +35,11 @@ import static io.github.qeesung.brace.BraceTokenTypes.DOUBLE_QUOTE;
 abstract public class BraceHighlighter {
     public final static int NON_OFFSET = -1;
     public final static int HIGHLIGHT_LAYER_WEIGHT = 100;
+    private final static int NO_CHAR = 0;
+    private final static int IDENTIFIER_CHAR = 1;
+    private final static int SPACE_CHAR = 2;
+    private final static int QUOTE_CHAR = 3;
+    private final static int SYMBOL_CHAR = 4;
     public final static BracePair EMPTY_BRACE_PAIR =
             new BracePair.BracePairBuilder().
                     leftOffset(NON_OFFSET).
@@ -45,6 +52,8 @@ abstract public class BraceHighlighter {
     protected CharSequence fileText;
     protected PsiFile psiFile;
     protected MarkupModelEx markupModelEx;
+    protected int scanLimit;
+    protected int visitedTokens;
 
     public BraceHighlighter(Editor editor) {
         this.editor = editor;
@@ -54,36 +63,82 @@ abstract public class BraceHighlighter {
         this.fileType = psiFile.getFileType();
         this.fileText = this.editor.getDocument().getImmutableCharSequence();
         this.markupModelEx = (MarkupModelEx) this.editor.getMarkupModel();
+        this.scanLimit = HighlightBracketPairSettings.getInstance().getScanLimit();
     }
 
     /**
+     * Get the supported brace token pairs.
      *
-     * @return
+     * @return supported brace token pairs, empty by default
      */
     public List<Pair<IElementType, IElementType>> getSupportedBraceToken() {
-        return new LinkedList<>();
+        return Collections.emptyList();
+    }
+
+    /**
+     * Get the block keyword pairs indexed with the brace tokens.
+     *
+     * @return keyword pairs, empty by default
+     */
+    protected KeywordPairs getKeywordPairs() {
+        return KeywordPairs.EMPTY;
+    }
+
+    /**
+     * Check if a brace token of the language is made of the identifier chars, such as
+     * the {@code begin} and {@code end} tokens of the brace matcher.
+     *
+     * @return has word braces, false by default
+     */
+    protected boolean hasWordBraces() {
+        return false;
+    }
+
+    /**
+     * Get the brace token snapshot of the current document version, built lazily.
+     *
+     * @return brace token snapshot
+     */
+    protected BraceTokenSnapshot getTokenSnapshot() {
+        return BraceTokenSnapshotBuilder.getSnapshot(this.editor, this.fileText, this.fileType,
+                this.getKeywordPairs(), HighlightEditorKind.of(this.editor).isDocumentStateShared());
+    }
+
+    /**
+     * Build the matching state of the current document version ahead of
+     * the first caret move.
+     */
+    public void warmUp() {
+        this.getTokenSnapshot();
     }
 
     public BracePair findClosetBracePairInBraceTokens(int offset) {
-        EditorHighlighter editorHighlighter = ((EditorEx) editor).getHighlighter();
-        boolean isBlockCaret = this.isBlockCaret();
         List<Pair<IElementType, IElementType>> braceTokens = this.getSupportedBraceToken();
+        if (braceTokens.isEmpty())
+            return EMPTY_BRACE_PAIR;
+        BraceTokenSnapshot snapshot = this.getTokenSnapshot();
+        boolean isBlockCaret = this.isBlockCaret();
+        Object leftScanEvent = BraceMatchingEvents.beginScan();
+        int leftIndex = snapshot.findLeftLParen(offset, isBlockCaret, this.scanLimit);
+        commitScan(leftScanEvent, BraceMatchingEvents.LEFT, offset,
+                getStart(snapshot, leftIndex), BraceTokenSnapshot.getLastVisitedTokens());
+        if (leftIndex == BraceTokenSnapshot.NON_INDEX)
+            return EMPTY_BRACE_PAIR;
+        Object rightScanEvent = BraceMatchingEvents.beginScan();
+        int rightIndex = snapshot.findRightRParen(offset, isBlockCaret, this.scanLimit);
+        commitScan(rightScanEvent, BraceMatchingEvents.RIGHT, offset,
+                getStart(snapshot, rightIndex), BraceTokenSnapshot.getLastVisitedTokens());
+        if (rightIndex == BraceTokenSnapshot.NON_INDEX)
+            return EMPTY_BRACE_PAIR;
+        IElementType leftType = snapshot.getElementType(leftIndex);
+        IElementType rightType = snapshot.getElementType(rightIndex);
+        // the keywords of one marker type are paired by the keyword
+        if (BraceTokenTypes.isKeywordType(leftType) && !snapshot.isPairBraces(leftIndex, rightIndex))
+            return EMPTY_BRACE_PAIR;
         for (Pair<IElementType, IElementType> braceTokenPair :
                 braceTokens) {
-            HighlighterIterator leftTraverseIterator = editorHighlighter.createIterator(offset);
-            HighlighterIterator rightTraverseIterator = editorHighlighter.createIterator(offset);
-            int leftBraceOffset = BraceMatchingUtilAdapter.findLeftLParen(
-                    leftTraverseIterator, braceTokenPair.getLeft(), this.fileText, this.fileType, isBlockCaret);
-            int rightBraceOffset = BraceMatchingUtilAdapter.findRightRParen(
-                    rightTraverseIterator, braceTokenPair.getRight(), this.fileText, this.fileType, isBlockCaret);
-            if (leftBraceOffset != NON_OFFSET && rightBraceOffset != NON_OFFSET) {
-                return new BracePair.BracePairBuilder().
-                        leftType(braceTokenPair.getLeft()).
-                        rightType(braceTokenPair.getRight()).
-                        leftIterator(leftTraverseIterator).
-                        rightIterator(rightTraverseIterator).build();
-
-
+            if (braceTokenPair.getLeft() == leftType && braceTokenPair.getRight() == rightType) {
+                return createBracePair(snapshot, leftIndex, rightIndex);
             }
         }
         return EMPTY_BRACE_PAIR;
@@ -92,15 +147,15 @@ abstract public class BraceHighlighter {
     public BracePair findClosetBracePairInStringSymbols(int offset) {
         if (offset < 0 || this.fileText == null || this.fileText.length() == 0)
             return EMPTY_BRACE_PAIR;
-        EditorHighlighter editorHighlighter = ((EditorEx) editor).getHighlighter();
-        HighlighterIterator iterator = editorHighlighter.createIterator(offset);
-        IElementType type = iterator.getTokenType();
+        BraceTokenSnapshot snapshot = this.getTokenSnapshot();
+        int index = snapshot.findTokenAt(offset);
         boolean isBlockCaret = this.isBlockCaret();
-        if (!BraceMatchingUtilAdapter.isStringToken(type))
+        if (index == BraceTokenSnapshot.NON_INDEX ||
+                snapshot.getKind(index) != BraceTokenSnapshot.STRING)
             return EMPTY_BRACE_PAIR;
 
-        int leftOffset = iterator.getStart();
-        int rightOffset = iterator.getEnd() - 1;
+        int leftOffset = snapshot.getStart(index);
+        int rightOffset = snapshot.getEnd(index) - 1;
         if (!isBlockCaret && leftOffset == offset)
             return EMPTY_BRACE_PAIR;
         return new BracePair.BracePairBuilder().
@@ -113,6 +168,12 @@ abstract public class BraceHighlighter {
     public BracePair findClosetBracePair(int offset) {
         BracePair braceTokenBracePair = this.findClosetBracePairInBraceTokens(offset);
         BracePair stringSymbolBracePair = this.findClosetBracePairInStringSymbols(offset);
+        return chooseClosetBracePair(offset, braceTokenBracePair, stringSymbolBracePair);
+    }
+
+    private BracePair chooseClosetBracePair(int offset,
+                                            BracePair braceTokenBracePair,
+                                            BracePair stringSymbolBracePair) {
         if (
                 (offset - braceTokenBracePair.getLeftBrace().getOffset() >
                         offset - stringSymbolBracePair.getLeftBrace().getOffset())
@@ -125,7 +186,290 @@ abstract public class BraceHighlighter {
         }
     }
 
+    /**
+     * Find the chain of enclosing brace pairs around the offset in one outward walk,
+     * every level is recorded as it closes, so the cost is the same as the single
+     * pair search.
+     *
+     * @param offset caret offset
+     * @param maxLevels max levels to be found
+     * @return enclosing brace pairs, innermost first
+     */
+    public List<BracePair> findClosetBracePairs(int offset, int maxLevels) {
+        List<BracePair> bracePairs = this.findClosetBracePairsInBraceTokens(offset, maxLevels);
+
+        // the string literal around the caret is the innermost level
+        BracePair innermostPair = bracePairs.isEmpty() ? EMPTY_BRACE_PAIR : bracePairs.get(0);
+        BracePair stringSymbolBracePair = this.findClosetBracePairInStringSymbols(offset);
+        if (stringSymbolBracePair != EMPTY_BRACE_PAIR &&
+                this.chooseClosetBracePair(offset, innermostPair, stringSymbolBracePair) == stringSymbolBracePair) {
+            bracePairs.add(0, stringSymbolBracePair);
+            if (bracePairs.size() > maxLevels)
+                bracePairs.remove(bracePairs.size() - 1);
+        }
+        return bracePairs;
+    }
+
+    /**
+     * Find the chain of enclosing brace token pairs around the offset.
+     *
+     * @param offset caret offset
+     * @param maxLevels max levels to be found
+     * @return enclosing brace pairs, innermost first
+     */
+    public List<BracePair> findClosetBracePairsInBraceTokens(int offset, int maxLevels) {
+        List<BracePair> bracePairs = new ArrayList<>(maxLevels);
+        if (this.getSupportedBraceToken().isEmpty())
+            return bracePairs;
+        BraceTokenSnapshot snapshot = this.getTokenSnapshot();
+        boolean isBlockCaret = this.isBlockCaret();
+        int[] leftIndexes = new int[maxLevels];
+        int[] rightIndexes = new int[maxLevels];
+        Object leftScanEvent = BraceMatchingEvents.beginScan();
+        int leftLevels = snapshot.findLeftLParens(offset, isBlockCaret, this.scanLimit, leftIndexes);
+        commitScan(leftScanEvent, BraceMatchingEvents.LEFT, offset,
+                leftLevels == 0 ? NON_OFFSET : snapshot.getStart(leftIndexes[0]),
+                BraceTokenSnapshot.getLastVisitedTokens());
+        Object rightScanEvent = BraceMatchingEvents.beginScan();
+        int rightLevels = snapshot.findRightRParens(offset, isBlockCaret, this.scanLimit, rightIndexes);
+        commitScan(rightScanEvent, BraceMatchingEvents.RIGHT, offset,
+                rightLevels == 0 ? NON_OFFSET : snapshot.getStart(rightIndexes[0]),
+                BraceTokenSnapshot.getLastVisitedTokens());
+        int levels = Math.min(leftLevels, rightLevels);
+        for (int i = 0; i < levels; i++) {
+            if (!snapshot.isPairBraces(leftIndexes[i], rightIndexes[i]))
+                break; // unmatched level, the outer levels are not reliable
+            bracePairs.add(createBracePair(snapshot, leftIndexes[i], rightIndexes[i]));
+        }
+        return bracePairs;
+    }
+
+    /**
+     * Find the innermost matched brace token pair enclosing the offset in the
+     * bracket structure, independent of the caret shape.
+     *
+     * @param offset offset
+     * @return enclosing brace pair, {@link #EMPTY_BRACE_PAIR} if not enclosed
+     */
+    public BracePair findEnclosingBracePair(int offset) {
+        if (this.getSupportedBraceToken().isEmpty())
+            return EMPTY_BRACE_PAIR;
+        return this.getBracketStructure().findEnclosingBracePair(offset);
+    }
+
+    /**
+     * Find the brace token at the offset and its partner.
+     *
+     * @param offset offset of the brace
+     * @return brace pair of the brace and its partner, {@link #EMPTY_BRACE_PAIR} if
+     * no brace is at the offset or the brace is unmatched
+     */
+    public BracePair findPartnerBracePair(int offset) {
+        if (this.getSupportedBraceToken().isEmpty())
+            return EMPTY_BRACE_PAIR;
+        return this.getBracketStructure().findPartnerBracePair(offset);
+    }
+
+    /**
+     * Get the count of the matched brace token pairs enclosing the offset.
+     *
+     * @param offset offset
+     * @return depth, 0 at the top level
+     */
+    public int getBraceDepth(int offset) {
+        if (this.getSupportedBraceToken().isEmpty())
+            return 0;
+        return this.getBracketStructure().getBraceDepth(offset);
+    }
+
+    /**
+     * Find the matched brace token pairs whose both braces are in the range.
+     *
+     * @param range text range
+     * @return brace pairs ordered by the left brace offset
+     */
+    public List<BracePair> findBracePairsInRange(TextRange range) {
+        if (this.getSupportedBraceToken().isEmpty())
+            return new ArrayList<>();
+        return this.getBracketStructure().findBracePairsInRange(range);
+    }
+
+    /**
+     * Get the bracket structure of the current document version.
+     *
+     * @return bracket structure of the token snapshot
+     */
+    protected BracketStructure getBracketStructure() {
+        return new BracketStructure(this.getTokenSnapshot(), this.fileText);
+    }
+
+    /**
+     * Get the range around the offset in which the caret finds the same pairs,
+     * the gap between the brace and string tokens.
+     *
+     * @param offset caret offset
+     * @return range, null if not known
+     */
+    public TextRange getSamePairsRange(int offset) {
+        BraceTokenSnapshot snapshot = this.getTokenSnapshot();
+        int gap = snapshot.findGapAt(offset);
+        if (gap == BraceTokenSnapshot.NON_INDEX)
+            return null;
+        return new TextRange(snapshot.getGapStart(gap), snapshot.getGapEnd(gap));
+    }
+
+    /**
+     * Get the offsets where the caret goes next, the gaps next to the caret to
+     * step into the child pairs, and the gaps next to the braces of the pair to
+     * go up to the parent pair.
+     *
+     * @param offset caret offset
+     * @param bracePair innermost brace pair around the caret
+     * @param gaps gaps to be visited in each direction of the caret
+     * @return one offset per gap
+     */
+    public List<Integer> getNeighbourOffsets(int offset, BracePair bracePair, int gaps) {
+        BraceTokenSnapshot snapshot = this.getTokenSnapshot();
+        List<Integer> offsets = new ArrayList<>();
+        addNeighbourOffsets(snapshot, offset, gaps, offsets);
+        if (bracePair != null && bracePair.getLeftBrace().getOffset() != NON_OFFSET &&
+                bracePair.getRightBrace().getOffset() != NON_OFFSET) {
+            addNeighbourOffsets(snapshot, bracePair.getLeftBrace().getOffset(), 1, offsets);
+            addNeighbourOffsets(snapshot, bracePair.getRightBrace().getOffset(), 1, offsets);
+        }
+        return offsets;
+    }
+
+    private static void addNeighbourOffsets(BraceTokenSnapshot snapshot, int offset, int gaps, List<Integer> offsets) {
+        int gap = snapshot.findGapAfter(offset);
+        int from = Math.max(0, gap - gaps);
+        int to = Math.min(snapshot.gapCount() - 1, gap + gaps);
+        for (int i = from; i <= to; i++) {
+            int gapStart = snapshot.getGapStart(i);
+            if (gapStart < snapshot.getGapEnd(i) && !offsets.contains(gapStart))
+                offsets.add(gapStart);
+        }
+    }
+
+    /**
+     * Check if replacing the old text by the new text can not change the brace and
+     * string tokens, only the identifier chars and the spaces are typed or removed,
+     * and the chars next to the edit can not form a comment, a string or a brace
+     * token with the edit or with each other. The identifier chars may form or break
+     * a brace token if the language has word braces or block keywords.
+     * <p>
+     * A quote next to the edit may take the typed letter as the string prefix, and
+     * a symbol next to the edit may form a token with the char on its edit side,
+     * such as {@code / *} becoming {@code /*}, so the symbol is only kept if that char
+     * stays of the same class.
+     *
+     * @param text document text after the edit
+     * @param offset edit offset
+     * @param oldText removed text
+     * @param newText inserted text
+     * @return the pairs are only shifted by the edit
+     */
+    public boolean isStructureSafeEdit(CharSequence text, int offset, CharSequence oldText, CharSequence newText) {
+        // the identifier chars may form or break a word brace or a block keyword
+        if (this.hasWordBraces() || !this.getKeywordPairs().isEmpty())
+            return false;
+        if (!isStructureSafeText(oldText) || !isStructureSafeText(newText))
+            return false;
+        int newEnd = offset + newText.length();
+        char before = offset > 0 ? text.charAt(offset - 1) : 0;
+        char after = newEnd < text.length() ? text.charAt(newEnd) : 0;
+        return isSafeNeighbour(before, firstChar(oldText, after), firstChar(newText, after)) &&
+                isSafeNeighbour(after, lastChar(oldText, before), lastChar(newText, before));
+    }
+
+    private static boolean isStructureSafeText(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != ' ' && c != '\t')
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isSafeNeighbour(char neighbour, char oldNext, char newNext) {
+        int charClass = getCharClass(neighbour);
+        return charClass != QUOTE_CHAR && (charClass != SYMBOL_CHAR || getCharClass(oldNext) == getCharClass(newNext));
+    }
+
+    private static char firstChar(CharSequence text, char orElse) {
+        return text.length() == 0 ? orElse : text.charAt(0);
+    }
+
+    private static char lastChar(CharSequence text, char orElse) {
+        return text.length() == 0 ? orElse : text.charAt(text.length() - 1);
+    }
+
+    private static int getCharClass(char c) {
+        if (c == 0)
+            return NO_CHAR;
+        if (Character.isLetterOrDigit(c) || c == '_')
+            return IDENTIFIER_CHAR;
+        if (Character.isWhitespace(c))
+            return SPACE_CHAR;
+        if (c == '"' || c == '\'' || c == '`')
+            return QUOTE_CHAR;
+        return SYMBOL_CHAR;
+    }
+
+    /**
+     * Get the tokens, or the chars of the text matching, visited by the scans of
+     * this highlighter.
+     *
+     * @return visited tokens
+     */
+    public int getVisitedTokens() {
+        return visitedTokens;
+    }
+
+    /**
+     * Get the language id of the highlighted file.
+     *
+     * @return language id
+     */
+    public String getLanguageId() {
+        return psiFile.getLanguage().getID();
+    }
+
+    /**
+     * Count the visited tokens of one scan, and commit the scan event if recorded.
+     *
+     * @param event scan event, null if not recorded
+     * @param direction scan direction
+     * @param offset caret offset
+     * @param braceOffset found brace offset, {@link #NON_OFFSET} if not found
+     * @param tokensVisited tokens visited by the scan
+     */
+    protected void commitScan(Object event, String direction, int offset, int braceOffset, int tokensVisited) {
+        this.visitedTokens += tokensVisited;
+        BraceMatchingEvents.commitScan(event, direction, getLanguageId(), offset,
+                braceOffset == NON_OFFSET ? NON_OFFSET : Math.abs(offset - braceOffset), tokensVisited);
+    }
+
+    private static int getStart(BraceTokenSnapshot snapshot, int index) {
+        return index == BraceTokenSnapshot.NON_INDEX ? NON_OFFSET : snapshot.getStart(index);
+    }
+
+    private BracePair createBracePair(BraceTokenSnapshot snapshot, int leftIndex, int rightIndex) {
+        return BracketStructure.createBracePair(snapshot, this.fileText, leftIndex, rightIndex);
+    }
+
     public Pair<RangeHighlighter, RangeHighlighter> highlightPair(BracePair bracePair) {
+        return highlightPair(bracePair, 0);
+    }
+
+    /**
+     * Highlight the brace pair, the outer level is highlighted with the dimmer attributes.
+     *
+     * @param bracePair brace pair
+     * @param level enclosing level, 0 is the innermost pair
+     * @return left and right highlighter
+     */
+    public Pair<RangeHighlighter, RangeHighlighter> highlightPair(BracePair bracePair, int level) {
         final Brace leftBrace = bracePair.getLeftBrace();
         final Brace rightBrace = bracePair.getRightBrace();
         final int leftBraceOffset = leftBrace.getOffset();
@@ -136,14 +480,7 @@ abstract public class BraceHighlighter {
         if (leftBraceOffset == NON_OFFSET ||
                 rightBraceOffset == NON_OFFSET)
             return null;
-        // try to get the text attr by element type
-        TextAttributesKey textAttributesKey =
-                HighlightBracketPairSettingsPage.getTextAttributesKeyByToken(leftBrace.getElementType());
-        // if not found, get the text attr by brace text
-        if (textAttributesKey == null) {
-            textAttributesKey = HighlightBracketPairSettingsPage.getTextAttributesKeyByText(leftBraceText);
-        }
-        final TextAttributes textAttributes = editor.getColorsScheme().getAttributes(textAttributesKey);
+        final TextAttributes textAttributes = getTextAttributes(bracePair, level);
 
         RangeHighlighter leftHighlighter = markupModelEx.addRangeHighlighter(
                 leftBraceOffset,
@@ -160,6 +497,17 @@ abstract public class BraceHighlighter {
         return new Pair<>(leftHighlighter, rightHighlighter);
     }
 
+    /**
+     * Get the text attributes of the brace pair in the editor color scheme.
+     *
+     * @param bracePair brace pair
+     * @param level enclosing level, 0 is the innermost pair
+     * @return text attributes
+     */
+    public TextAttributes getTextAttributes(BracePair bracePair, int level) {
+        return BracePalette.getInstance(editor.getColorsScheme()).getAttributes(bracePair.getLeftBrace(), level);
+    }
+
     public void eraseHighlight(List<RangeHighlighter> list) {
         for (RangeHighlighter l :
                 list) {
@@ -5,6 +5,7 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
+import io.github.qeesung.setting.HighlightBracketPairSettings;
 
 /**
  * Factory to get the {@link BraceHighlighter} instance according to the editor.
@@ -17,7 +18,8 @@ public class BraceHighlighterFactory {
     }
 
     /**
-     * Get the {@link BraceHighlighter} according to the editor and file type.
+     * Get the {@link BraceHighlighter} according to the editor and file type,
+     * null if the file is too large or the language is disabled.
      * @param editor editor
      * @return brace highlighter
      */
@@ -34,6 +36,32 @@ public class BraceHighlighterFactory {
         if (psiFile == null)
             return null;
 
+        HighlightBracketPairSettings settings = HighlightBracketPairSettings.getInstance();
+        if (document.getTextLength() > settings.getMaxFileSize() ||
+                !settings.isLanguageEnabled(psiFile.getLanguage()))
+            return null;
+
+        if (!DefaultBraceHighlighter.isBraceMatcherSupported(psiFile.getLanguage()))
+            return new CharacterBraceHighlighter(editor);
         return new DefaultBraceHighlighter(editor);
     }
+
+    /**
+     * Get the {@link BraceHighlighter} of the caret offset, the highlighter of
+     * the injected language if the offset is in an injected fragment.
+     * @param editor editor
+     * @param offset caret offset
+     * @return brace highlighter
+     */
+    public static BraceHighlighter getBraceHighlighterInstance(Editor editor, int offset) {
+        BraceHighlighter highlighter = getBraceHighlighterInstance(editor);
+        if (highlighter instanceof DefaultBraceHighlighter &&
+                HighlightBracketPairSettings.getInstance().isHighlightInjectedFragments()) {
+            BraceHighlighter injectedHighlighter =
+                    InjectedBraceHighlighter.getInstance(editor, highlighter, offset);
+            if (injectedHighlighter != null)
+                return injectedHighlighter;
+        }
+        return highlighter;
+    }
 }
@@ -0,0 +1,147 @@
+package io.github.qeesung.highlighter;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.markup.CustomHighlighterRenderer;
+import com.intellij.openapi.editor.markup.HighlighterLayer;
+import com.intellij.openapi.editor.markup.HighlighterTargetArea;
+import com.intellij.openapi.editor.markup.MarkupModel;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.editor.markup.TextAttributes;
+import io.github.qeesung.brace.Brace;
+import io.github.qeesung.brace.BracePair;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Paint the brace pairs by one long-lived range highlighter per editor, instead of
+ * adding and removing two range highlighters per caret move. The caret move only
+ * updates the small brace model and repaints the old and new brace rectangles,
+ * no markup model event is fired.
+ * <p>
+ * The custom renderer is painted under the text, so the brace background and
+ * effect are painted, but the brace foreground is kept.
+ */
+public class BracePairRenderer implements CustomHighlighterRenderer {
+    private final Editor editor;
+    private RangeHighlighter rangeHighlighter;
+    private final List<Brace> braces = new ArrayList<>();
+    private final List<TextAttributes> braceAttributes = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param editor editor
+     */
+    public BracePairRenderer(Editor editor) {
+        this.editor = editor;
+    }
+
+    /**
+     * Replace the painted brace pairs, and repaint the old and new braces.
+     *
+     * @param highlighter brace highlighter to get the text attributes
+     * @param bracePairs brace pairs, innermost first
+     */
+    public void update(BraceHighlighter highlighter, List<BracePair> bracePairs) {
+        ensureRangeHighlighter();
+        repaintBraces();
+        braces.clear();
+        braceAttributes.clear();
+        for (int level = 0; level < bracePairs.size(); level++) {
+            BracePair bracePair = bracePairs.get(level);
+            if (bracePair.getLeftBrace().getOffset() == BraceHighlighter.NON_OFFSET ||
+                    bracePair.getRightBrace().getOffset() == BraceHighlighter.NON_OFFSET)
+                continue;
+            TextAttributes textAttributes = highlighter.getTextAttributes(bracePair, level);
+            braces.add(bracePair.getLeftBrace());
+            braceAttributes.add(textAttributes);
+            braces.add(bracePair.getRightBrace());
+            braceAttributes.add(textAttributes);
+        }
+        repaintBraces();
+    }
+
+    /**
+     * Clear the painted brace pairs.
+     */
+    public void clear() {
+        if (braces.isEmpty())
+            return;
+        repaintBraces();
+        braces.clear();
+        braceAttributes.clear();
+    }
+
+    /**
+     * Remove the range highlighter.
+     */
+    public void dispose() {
+        braces.clear();
+        braceAttributes.clear();
+        if (rangeHighlighter != null) {
+            editor.getMarkupModel().removeHighlighter(rangeHighlighter);
+            rangeHighlighter = null;
+        }
+    }
+
+    @Override
+    public void paint(Editor editor, RangeHighlighter highlighter, Graphics g) {
+        int textLength = editor.getDocument().getTextLength();
+        for (int i = 0; i < braces.size(); i++) {
+            Brace brace = braces.get(i);
+            TextAttributes textAttributes = braceAttributes.get(i);
+            if (textAttributes == null || brace.getOffset() + brace.getText().length() > textLength)
+                continue;
+            Rectangle rectangle = getBraceRectangle(brace);
+            if (textAttributes.getBackgroundColor() != null) {
+                g.setColor(textAttributes.getBackgroundColor());
+                g.fillRect(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+            }
+            if (textAttributes.getEffectColor() != null) {
+                g.setColor(textAttributes.getEffectColor());
+                g.drawRect(rectangle.x, rectangle.y, rectangle.width - 1, rectangle.height - 1);
+            }
+        }
+    }
+
+    /**
+     * Create the range highlighter over the whole document once, and create it
+     * again only if it is invalidated by the document changes.
+     */
+    private void ensureRangeHighlighter() {
+        Document document = editor.getDocument();
+        if (rangeHighlighter != null && rangeHighlighter.isValid() &&
+                rangeHighlighter.getStartOffset() == 0 &&
+                rangeHighlighter.getEndOffset() == document.getTextLength())
+            return;
+        MarkupModel markupModel = editor.getMarkupModel();
+        if (rangeHighlighter != null)
+            markupModel.removeHighlighter(rangeHighlighter);
+        rangeHighlighter = markupModel.addRangeHighlighter(0, document.getTextLength(),
+                HighlighterLayer.SELECTION + BraceHighlighter.HIGHLIGHT_LAYER_WEIGHT,
+                null, HighlighterTargetArea.EXACT_RANGE);
+        rangeHighlighter.setGreedyToLeft(true);
+        rangeHighlighter.setGreedyToRight(true);
+        rangeHighlighter.setCustomRenderer(this);
+    }
+
+    private void repaintBraces() {
+        JComponent contentComponent = editor.getContentComponent();
+        int textLength = editor.getDocument().getTextLength();
+        for (Brace brace : braces) {
+            if (brace.getOffset() + brace.getText().length() <= textLength)
+                contentComponent.repaint(getBraceRectangle(brace));
+        }
+    }
+
+    private Rectangle getBraceRectangle(Brace brace) {
+        Point start = editor.offsetToXY(brace.getOffset());
+        Point end = editor.offsetToXY(brace.getOffset() + brace.getText().length());
+        int width = end.y == start.y ? Math.max(1, end.x - start.x) : editor.getLineHeight() / 2;
+        return new Rectangle(start.x, start.y, width, editor.getLineHeight());
+    }
+}
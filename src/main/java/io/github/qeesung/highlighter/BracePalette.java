@@ -0,0 +1,161 @@
+package io.github.qeesung.highlighter;
+
+import com.intellij.openapi.editor.colors.EditorColorsScheme;
+import com.intellij.openapi.editor.colors.TextAttributesKey;
+import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.containers.ContainerUtil;
+import io.github.qeesung.brace.Brace;
+import io.github.qeesung.brace.BraceTokenTypes;
+import io.github.qeesung.setting.HighlightBracketPairSettingsPage;
+
+import java.awt.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Text attributes of the brace pairs in one color scheme, keyed by the left brace
+ * element type, with the dimmer attributes of every enclosing level precomputed.
+ * <p>
+ * The attributes key is resolved once per element type, so the highlight is one
+ * map lookup. The few types whose key is resolved by the brace text are keyed by
+ * the type and the text. The palettes are discarded when the global color scheme
+ * is changed or edited.
+ */
+public class BracePalette {
+    public final static int MAX_LEVELS = 32;
+    private final static Map<EditorColorsScheme, BracePalette> PALETTES = ContainerUtil.createConcurrentWeakMap();
+    /**
+     * Marker of the element types whose attributes key is resolved by the brace text.
+     */
+    private final static TextAttributes[] RESOLVED_BY_TEXT = new TextAttributes[0];
+
+    private final EditorColorsScheme scheme;
+    private final Map<IElementType, TextAttributes[]> typeAttributes = new ConcurrentHashMap<>();
+    private final Map<IElementType, Map<String, TextAttributes[]>> textAttributes = new ConcurrentHashMap<>();
+    private final Map<TextAttributesKey, TextAttributes[]> keyAttributes = new ConcurrentHashMap<>();
+
+    private BracePalette(EditorColorsScheme scheme) {
+        this.scheme = scheme;
+    }
+
+    /**
+     * Get the palette of the color scheme, created on the first call.
+     *
+     * @param scheme editor color scheme
+     * @return palette
+     */
+    public static BracePalette getInstance(EditorColorsScheme scheme) {
+        return PALETTES.computeIfAbsent(scheme, BracePalette::new);
+    }
+
+    /**
+     * Discard all the palettes, invoked when the color scheme is changed.
+     */
+    public static void invalidateAll() {
+        PALETTES.clear();
+    }
+
+    /**
+     * Get the text attributes of the pair of the left brace.
+     *
+     * @param leftBrace left brace of the pair
+     * @param level enclosing level, 0 is the innermost pair
+     * @return text attributes, null if not colored in the scheme
+     */
+    public TextAttributes getAttributes(Brace leftBrace, int level) {
+        IElementType type = leftBrace.getElementType();
+        if (type == null)
+            return null;
+        TextAttributes[] levels = typeAttributes.get(type);
+        if (levels == null) {
+            TextAttributesKey textAttributesKey = resolveKeyByType(type);
+            levels = textAttributesKey == null ? RESOLVED_BY_TEXT : getLevels(textAttributesKey);
+            typeAttributes.put(type, levels);
+        }
+        if (levels == RESOLVED_BY_TEXT)
+            levels = getTextLevels(type, leftBrace.getText());
+        return levels[Math.min(level, MAX_LEVELS - 1)];
+    }
+
+    /**
+     * Resolve the attributes key by the element type, the block keywords have
+     * their own key.
+     *
+     * @return attributes key, null if resolved by the brace text
+     */
+    private static TextAttributesKey resolveKeyByType(IElementType type) {
+        if (BraceTokenTypes.isKeywordType(type))
+            return HighlightBracketPairSettingsPage.KEYWORD_PAIR_ATTR;
+        return HighlightBracketPairSettingsPage.getTextAttributesKeyByToken(type);
+    }
+
+    /**
+     * Get the levels of the type resolved by the brace text, the other pairs
+     * have their own key.
+     */
+    private TextAttributes[] getTextLevels(IElementType type, String text) {
+        Map<String, TextAttributes[]> levelsByText = textAttributes.get(type);
+        if (levelsByText == null) {
+            levelsByText = new ConcurrentHashMap<>();
+            textAttributes.put(type, levelsByText);
+        }
+        TextAttributes[] levels = levelsByText.get(text);
+        if (levels == null) {
+            TextAttributesKey textAttributesKey = HighlightBracketPairSettingsPage.getTextAttributesKeyByText(text);
+            levels = getLevels(textAttributesKey == null ?
+                    HighlightBracketPairSettingsPage.OTHER_PAIR_ATTR : textAttributesKey);
+            levelsByText.put(text, levels);
+        }
+        return levels;
+    }
+
+    /**
+     * Get the levels of the attributes key, shared by the types and the texts
+     * resolved to the same key.
+     */
+    private TextAttributes[] getLevels(TextAttributesKey textAttributesKey) {
+        TextAttributes[] levels = keyAttributes.get(textAttributesKey);
+        if (levels == null) {
+            levels = createLevels(textAttributesKey);
+            keyAttributes.put(textAttributesKey, levels);
+        }
+        return levels;
+    }
+
+    private TextAttributes[] createLevels(TextAttributesKey textAttributesKey) {
+        TextAttributes[] levels = new TextAttributes[MAX_LEVELS];
+        TextAttributes textAttributes = scheme.getAttributes(textAttributesKey);
+        for (int level = 0; level < MAX_LEVELS; level++)
+            levels[level] = dimTextAttributes(textAttributes, level);
+        return levels;
+    }
+
+    /**
+     * Blend the text attributes colors into the editor background by the level.
+     *
+     * @param textAttributes text attributes
+     * @param level enclosing level, 0 is not dimmed
+     * @return dimmed text attributes
+     */
+    private TextAttributes dimTextAttributes(TextAttributes textAttributes, int level) {
+        if (level == 0 || textAttributes == null)
+            return textAttributes;
+        Color background = scheme.getDefaultBackground();
+        double ratio = 1.0 / (level + 1);
+        TextAttributes dimmed = textAttributes.clone();
+        dimmed.setForegroundColor(blendColor(textAttributes.getForegroundColor(), background, ratio));
+        dimmed.setBackgroundColor(blendColor(textAttributes.getBackgroundColor(), background, ratio));
+        dimmed.setEffectColor(blendColor(textAttributes.getEffectColor(), background, ratio));
+        return dimmed;
+    }
+
+    private static Color blendColor(Color color, Color background, double ratio) {
+        if (color == null || background == null)
+            return color;
+        return new Color(
+                (int) (color.getRed() * ratio + background.getRed() * (1 - ratio)),
+                (int) (color.getGreen() * ratio + background.getGreen() * (1 - ratio)),
+                (int) (color.getBlue() * ratio + background.getBlue() * (1 - ratio)));
+    }
+}
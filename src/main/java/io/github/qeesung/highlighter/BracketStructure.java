@@ -0,0 +1,102 @@
+package io.github.qeesung.highlighter;
+
+import com.intellij.openapi.util.TextRange;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.brace.BraceTokenSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.qeesung.highlighter.BraceHighlighter.EMPTY_BRACE_PAIR;
+
+/**
+ * Bracket structure of one document version, the matched brace token pairs of
+ * the {@link BraceTokenSnapshot}, independent of the editor and the caret shape.
+ */
+public class BracketStructure {
+    private final BraceTokenSnapshot snapshot;
+    private final CharSequence text;
+
+    /**
+     * Constructor.
+     *
+     * @param snapshot brace token snapshot of the text
+     * @param text document text the snapshot is built from
+     */
+    public BracketStructure(BraceTokenSnapshot snapshot, CharSequence text) {
+        this.snapshot = snapshot;
+        this.text = text;
+    }
+
+    /**
+     * Find the innermost matched brace token pair enclosing the offset.
+     *
+     * @param offset offset
+     * @return enclosing brace pair, {@link BraceHighlighter#EMPTY_BRACE_PAIR} if not enclosed
+     */
+    public BracePair findEnclosingBracePair(int offset) {
+        int leftIndex = snapshot.findEnclosingLeftBrace(offset);
+        if (leftIndex == BraceTokenSnapshot.NON_INDEX)
+            return EMPTY_BRACE_PAIR;
+        return createBracePair(snapshot, text, leftIndex, snapshot.findPartner(leftIndex));
+    }
+
+    /**
+     * Find the brace token at the offset and its partner.
+     *
+     * @param offset offset of the brace
+     * @return brace pair of the brace and its partner, {@link BraceHighlighter#EMPTY_BRACE_PAIR}
+     * if no brace is at the offset or the brace is unmatched
+     */
+    public BracePair findPartnerBracePair(int offset) {
+        int index = snapshot.findFirstTokenStartAtOrAfter(offset + 1) - 1;
+        if (index < 0 || snapshot.getEnd(index) <= offset || snapshot.getKind(index) == BraceTokenSnapshot.STRING)
+            return EMPTY_BRACE_PAIR;
+        int partner = snapshot.findPartner(index);
+        if (partner == BraceTokenSnapshot.NON_INDEX)
+            return EMPTY_BRACE_PAIR;
+        return snapshot.getKind(index) == BraceTokenSnapshot.LBRACE ?
+                createBracePair(snapshot, text, index, partner) : createBracePair(snapshot, text, partner, index);
+    }
+
+    /**
+     * Get the count of the matched brace token pairs enclosing the offset.
+     *
+     * @param offset offset
+     * @return depth, 0 at the top level
+     */
+    public int getBraceDepth(int offset) {
+        return snapshot.getDepth(offset);
+    }
+
+    /**
+     * Find the matched brace token pairs whose both braces are in the range.
+     *
+     * @param range text range
+     * @return brace pairs ordered by the left brace offset
+     */
+    public List<BracePair> findBracePairsInRange(TextRange range) {
+        List<BracePair> bracePairs = new ArrayList<>();
+        for (int i = snapshot.findFirstTokenStartAtOrAfter(range.getStartOffset());
+             i < snapshot.size() && snapshot.getStart(i) < range.getEndOffset(); i++) {
+            if (snapshot.getKind(i) != BraceTokenSnapshot.LBRACE)
+                continue;
+            int partner = snapshot.findPartner(i);
+            if (partner != BraceTokenSnapshot.NON_INDEX && snapshot.getEnd(partner) <= range.getEndOffset())
+                bracePairs.add(createBracePair(snapshot, text, i, partner));
+        }
+        return bracePairs;
+    }
+
+    static BracePair createBracePair(BraceTokenSnapshot snapshot, CharSequence text, int leftIndex, int rightIndex) {
+        int leftOffset = snapshot.getStart(leftIndex);
+        int rightOffset = snapshot.getStart(rightIndex);
+        return new BracePair.BracePairBuilder().
+                leftType(snapshot.getElementType(leftIndex)).
+                rightType(snapshot.getElementType(rightIndex)).
+                leftText(text.subSequence(leftOffset, snapshot.getEnd(leftIndex)).toString()).
+                rightText(text.subSequence(rightOffset, snapshot.getEnd(rightIndex)).toString()).
+                leftOffset(leftOffset).
+                rightOffset(rightOffset).build();
+    }
+}
@@ -0,0 +1,192 @@
+package io.github.qeesung.highlighter;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.text.CharArrayUtil;
+import io.github.qeesung.adapter.CharSequenceBraceMatcher;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.brace.KeywordPairs;
+import io.github.qeesung.profiler.BraceMatchingEvents;
+import io.github.qeesung.setting.HighlightBracketPairSettings;
+import io.github.qeesung.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static io.github.qeesung.brace.BraceTokenTypes.*;
+
+/**
+ * Fallback Brace Highlighter for the languages without a {@code PairedBraceMatcher},
+ * such as plain text, logs and custom DSLs, matches the braces and the block keywords
+ * of the language on the document text.
+ * <p>
+ * The highlighter is created per caret move, the brace matcher and its buffers
+ * are reused per thread as long as the fallback settings are not changed.
+ */
+public class CharacterBraceHighlighter extends BraceHighlighter {
+    private static final IElementType[] BRACE_TYPES = {
+            PLAIN_LPARENTH, PLAIN_RPARENTH,
+            PLAIN_LBRACKET, PLAIN_RBRACKET,
+            PLAIN_LBRACE, PLAIN_RBRACE
+    };
+    private static final List<Pair<IElementType, IElementType>> BRACE_TOKENS = Arrays.asList(
+            new Pair<>(PLAIN_LPARENTH, PLAIN_RPARENTH),
+            new Pair<>(PLAIN_LBRACKET, PLAIN_RBRACKET),
+            new Pair<>(PLAIN_LBRACE, PLAIN_RBRACE));
+    private static final ThreadLocal<CharSequenceBraceMatcher> BRACE_MATCHER = new ThreadLocal<>();
+
+    private final KeywordPairs keywordPairs;
+    private final List<Pair<IElementType, IElementType>> supportedBraceTokens;
+    private final int maxDistance;
+    private final boolean quoteAware;
+
+    /**
+     * Constructor.
+     *
+     * @param editor editor
+     */
+    public CharacterBraceHighlighter(Editor editor) {
+        super(editor);
+        HighlightBracketPairSettings settings = HighlightBracketPairSettings.getInstance();
+        this.keywordPairs = settings.getKeywordPairs(this.psiFile.getLanguage());
+        if (keywordPairs.isEmpty()) {
+            this.supportedBraceTokens = BRACE_TOKENS;
+        } else {
+            this.supportedBraceTokens = new ArrayList<>(BRACE_TOKENS);
+            this.supportedBraceTokens.addAll(keywordPairs.getPairs());
+        }
+        this.maxDistance = settings.getFallbackMaxDistance();
+        this.quoteAware = settings.isFallbackQuoteAware();
+    }
+
+    /**
+     * Get the brace matcher of the current thread, created again if the settings
+     * are changed.
+     */
+    private CharSequenceBraceMatcher getBraceMatcher() {
+        CharSequenceBraceMatcher braceMatcher = BRACE_MATCHER.get();
+        if (braceMatcher == null || !braceMatcher.hasSettings(maxDistance, quoteAware, keywordPairs)) {
+            braceMatcher = new DocumentTextBraceMatcher(maxDistance, quoteAware, keywordPairs);
+            BRACE_MATCHER.set(braceMatcher);
+        }
+        return braceMatcher;
+    }
+
+    /**
+     * Get the plain brace pairs, and the block keyword pairs of the language.
+     *
+     * @return plain brace pairs
+     */
+    @Override
+    public List<Pair<IElementType, IElementType>> getSupportedBraceToken() {
+        return supportedBraceTokens;
+    }
+
+    /**
+     * Get the block keyword pairs of the language in the settings.
+     *
+     * @return keyword pairs
+     */
+    @Override
+    protected KeywordPairs getKeywordPairs() {
+        return keywordPairs;
+    }
+
+    /**
+     * The text is matched directly, no matching state to be built.
+     */
+    @Override
+    public void warmUp() {
+    }
+
+    /**
+     * The text is matched directly, the pairs are not cached by the token gaps.
+     *
+     * @param offset caret offset
+     * @return null
+     */
+    @Override
+    public TextRange getSamePairsRange(int offset) {
+        return null;
+    }
+
+    @Override
+    public List<Integer> getNeighbourOffsets(int offset, BracePair bracePair, int gaps) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public BracePair findClosetBracePairInBraceTokens(int offset) {
+        List<BracePair> bracePairs = this.findClosetBracePairsInBraceTokens(offset, 1);
+        return bracePairs.isEmpty() ? EMPTY_BRACE_PAIR : bracePairs.get(0);
+    }
+
+    @Override
+    public List<BracePair> findClosetBracePairsInBraceTokens(int offset, int maxLevels) {
+        List<BracePair> bracePairs = new ArrayList<>(maxLevels);
+        CharSequenceBraceMatcher braceMatcher = getBraceMatcher();
+        boolean isBlockCaret = this.isBlockCaret();
+        int[] leftOffsets = new int[maxLevels];
+        int[] rightOffsets = new int[maxLevels];
+        Object leftScanEvent = BraceMatchingEvents.beginScan();
+        int leftLevels = braceMatcher.findLeftLParens(this.fileText, offset, isBlockCaret, leftOffsets);
+        commitScan(leftScanEvent, BraceMatchingEvents.LEFT, offset,
+                leftLevels == 0 ? NON_OFFSET : leftOffsets[0], braceMatcher.getLastScannedChars());
+        Object rightScanEvent = BraceMatchingEvents.beginScan();
+        int rightLevels = braceMatcher.findRightRParens(this.fileText, offset, isBlockCaret, rightOffsets);
+        commitScan(rightScanEvent, BraceMatchingEvents.RIGHT, offset,
+                rightLevels == 0 ? NON_OFFSET : rightOffsets[0], braceMatcher.getLastScannedChars());
+        int levels = Math.min(leftLevels, rightLevels);
+        for (int i = 0; i < levels; i++) {
+            int leftBrace = braceMatcher.braceAt(this.fileText, leftOffsets[i]);
+            int rightBrace = braceMatcher.braceAt(this.fileText, rightOffsets[i]);
+            if (!braceMatcher.isPair(leftBrace, rightBrace))
+                break; // unmatched level, the outer levels are not reliable
+            bracePairs.add(new BracePair.BracePairBuilder().
+                    leftType(getBraceType(braceMatcher, leftBrace)).
+                    rightType(getBraceType(braceMatcher, rightBrace)).
+                    leftText(braceMatcher.getBraceText(leftBrace)).
+                    rightText(braceMatcher.getBraceText(rightBrace)).
+                    leftOffset(leftOffsets[i]).
+                    rightOffset(rightOffsets[i]).build());
+        }
+        return bracePairs;
+    }
+
+    private static IElementType getBraceType(CharSequenceBraceMatcher braceMatcher, int brace) {
+        if (brace < CharSequenceBraceMatcher.KEYWORD_BRACE)
+            return BRACE_TYPES[brace];
+        return braceMatcher.isLeftBrace(brace) ? KEYWORD_LBRACE : KEYWORD_RBRACE;
+    }
+
+    @Override
+    public BracePair findClosetBracePairInStringSymbols(int offset) {
+        int[] quotes = new int[2];
+        if (!getBraceMatcher().findQuotePair(this.fileText, offset, this.isBlockCaret(), quotes))
+            return EMPTY_BRACE_PAIR;
+        return new BracePair.BracePairBuilder().
+                leftType(DOUBLE_QUOTE).
+                rightType(DOUBLE_QUOTE).
+                leftText(String.valueOf(this.fileText.charAt(quotes[0]))).
+                rightText(String.valueOf(this.fileText.charAt(quotes[1]))).
+                leftOffset(quotes[0]).
+                rightOffset(quotes[1]).build();
+    }
+
+    /**
+     * Brace matcher reading the document text chunks without copying the text.
+     */
+    private static class DocumentTextBraceMatcher extends CharSequenceBraceMatcher {
+        private DocumentTextBraceMatcher(int maxDistance, boolean quoteAware, KeywordPairs keywordPairs) {
+            super(maxDistance, quoteAware, keywordPairs);
+        }
+
+        @Override
+        protected void getChars(CharSequence text, int start, int end, char[] buffer) {
+            CharArrayUtil.getChars(text, buffer, start, 0, end - start);
+        }
+    }
+}
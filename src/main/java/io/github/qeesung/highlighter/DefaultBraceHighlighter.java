@@ -6,6 +6,9 @@ import com.intellij.lang.LanguageBraceMatching;
 import com.intellij.lang.PairedBraceMatcher;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.psi.tree.IElementType;
+import io.github.qeesung.brace.BraceTokenTypes;
+import io.github.qeesung.brace.KeywordPairs;
+import io.github.qeesung.setting.HighlightBracketPairSettings;
 import io.github.qeesung.util.Pair;
 
 import java.util.*;
@@ -16,9 +19,18 @@ import java.util.*;
 public class DefaultBraceHighlighter extends BraceHighlighter {
     public static Map<Language, List<Pair<IElementType, IElementType>>>
             LanguageBracePairs = new HashMap<>();
+    /**
+     * Languages with a brace token made of the identifier chars.
+     */
+    private static final Set<Language> WordBraceLanguages = new HashSet<>();
+
+    private final KeywordPairs keywordPairs;
+    private final List<Pair<IElementType, IElementType>> supportedBraceTokens;
+    private final boolean hasWordBraces;
 
     /**
-     * Get all the registered languages' brace pairs and cache it.
+     * Get all the registered languages' brace pairs and cache it, and find the
+     * languages with the word braces.
      */
     static {
         Collection<Language> languageList = Language.getRegisteredLanguages();
@@ -40,6 +52,9 @@ public class DefaultBraceHighlighter extends BraceHighlighter {
                                         bracePair.getRightBraceType()
                                 );
                         braceList.add(braceEntry);
+                        if (BraceTokenTypes.isWordBraceType(bracePair.getLeftBraceType()) ||
+                                BraceTokenTypes.isWordBraceType(bracePair.getRightBraceType()))
+                            WordBraceLanguages.add(language);
                     }
                 }
                 LanguageBracePairs.put(language, braceList);
@@ -54,17 +69,58 @@ public class DefaultBraceHighlighter extends BraceHighlighter {
      */
     public DefaultBraceHighlighter(Editor editor) {
         super(editor);
+        Language language = this.psiFile.getLanguage();
+        this.keywordPairs = HighlightBracketPairSettings.getInstance().getKeywordPairs(language);
+        this.hasWordBraces = WordBraceLanguages.contains(language);
+        List<Pair<IElementType, IElementType>> braceList = LanguageBracePairs.get(language);
+        if (braceList == null || keywordPairs.isEmpty()) {
+            this.supportedBraceTokens = braceList;
+        } else {
+            this.supportedBraceTokens = new ArrayList<>(braceList);
+            this.supportedBraceTokens.addAll(keywordPairs.getPairs());
+        }
     }
 
     /**
-     * Get all cached supported brace token pair.
+     * Check if the language has a {@link PairedBraceMatcher} with any brace pair.
+     *
+     * @param language language
+     * @return is supported
+     */
+    public static boolean isBraceMatcherSupported(Language language) {
+        List<Pair<IElementType, IElementType>> braceList = LanguageBracePairs.get(language);
+        return braceList != null && !braceList.isEmpty();
+    }
+
+    /**
+     * Get all cached supported brace token pair, and the block keyword pairs
+     * of the language.
      *
      * @return all supported brace pair token
      */
     @Override
     public List<Pair<IElementType, IElementType>> getSupportedBraceToken() {
-        Language language = this.psiFile.getLanguage();
-        List<Pair<IElementType, IElementType>> braceList = LanguageBracePairs.get(language);
-        return braceList == null ? super.getSupportedBraceToken() : braceList;
+        return supportedBraceTokens == null ? super.getSupportedBraceToken() : supportedBraceTokens;
+    }
+
+    /**
+     * Get the block keyword pairs of the language in the settings.
+     *
+     * @return keyword pairs
+     */
+    @Override
+    protected KeywordPairs getKeywordPairs() {
+        return keywordPairs;
+    }
+
+    /**
+     * Check if the brace matcher of the language has a brace token made of the
+     * identifier chars, found once per language.
+     *
+     * @return has word braces
+     */
+    @Override
+    protected boolean hasWordBraces() {
+        return hasWordBraces;
     }
 }
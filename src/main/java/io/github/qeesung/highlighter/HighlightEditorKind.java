@@ -0,0 +1,94 @@
+package io.github.qeesung.highlighter;
+
+import com.intellij.diff.util.DiffUtil;
+import com.intellij.execution.impl.ConsoleViewUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+
+/**
+ * Kind of the editor to choose the highlight policy, such as the run console
+ * following a chatty output, the log viewer and the diff pane.
+ */
+public enum HighlightEditorKind {
+    /**
+     * Editor of a file.
+     */
+    MAIN,
+
+    /**
+     * Run, debug or terminal console.
+     */
+    CONSOLE,
+
+    /**
+     * Editor of a log file.
+     */
+    LOG,
+
+    /**
+     * Side of a diff viewer.
+     */
+    DIFF,
+
+    /**
+     * Other read only viewer.
+     */
+    VIEWER;
+
+    private static final Key<HighlightEditorKind> HIGHLIGHT_EDITOR_KIND =
+            Key.create("io.github.qeesung.HighlightEditorKind");
+    private static final String LOG_EXTENSION = "log";
+
+    /**
+     * Classify the created editor and record its kind, invoked when the editor is
+     * created. The console and diff marks are put by the creator right after the
+     * editor is created, so the kind is recorded at the end of the creating event.
+     *
+     * @param editor created editor
+     */
+    public static void classifyCreatedEditor(Editor editor) {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (!editor.isDisposed())
+                editor.putUserData(HIGHLIGHT_EDITOR_KIND, classify(editor));
+        }, ModalityState.any());
+    }
+
+    /**
+     * Get the kind of the editor recorded at its creation, or classify it without
+     * recording it if the kind is not recorded yet.
+     *
+     * @param editor editor
+     * @return editor kind
+     */
+    public static HighlightEditorKind of(Editor editor) {
+        HighlightEditorKind kind = editor.getUserData(HIGHLIGHT_EDITOR_KIND);
+        return kind != null ? kind : classify(editor);
+    }
+
+    /**
+     * Check if the editors of this kind share the matching state of the document,
+     * the file and diff editors of one document are lexed by the same file type.
+     *
+     * @return shares document state
+     */
+    public boolean isDocumentStateShared() {
+        return this == MAIN || this == DIFF;
+    }
+
+    private static HighlightEditorKind classify(Editor editor) {
+        if (editor.getUserData(ConsoleViewUtil.EDITOR_IS_CONSOLE_VIEW) == Boolean.TRUE)
+            return CONSOLE;
+        if (DiffUtil.isDiffEditor(editor))
+            return DIFF;
+        VirtualFile file = FileDocumentManager.getInstance().getFile(editor.getDocument());
+        if (file != null && LOG_EXTENSION.equalsIgnoreCase(file.getExtension()))
+            return LOG;
+        if (editor.isViewer())
+            return VIEWER;
+        return MAIN;
+    }
+}
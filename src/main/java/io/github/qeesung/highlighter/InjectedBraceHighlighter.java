@@ -0,0 +1,255 @@
+package io.github.qeesung.highlighter;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.tree.IElementType;
+import io.github.qeesung.adapter.InjectedFragmentCache;
+import io.github.qeesung.brace.Brace;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.brace.BraceTokenSnapshot;
+import io.github.qeesung.setting.HighlightBracketPairSettings;
+import io.github.qeesung.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Brace highlighter of the injected language fragment, such as the SQL, JSON
+ * or regex in the string literal, matches the braces with the brace pairs of
+ * the injected language, and falls back to the host pairs outside of the fragment.
+ * <p>
+ * The find and the structure methods take the host offsets and return the pairs
+ * in the host offsets.
+ */
+public class InjectedBraceHighlighter extends BraceHighlighter {
+    private final BraceHighlighter hostHighlighter;
+    private final InjectedFragmentCache.Fragment fragment;
+
+    /**
+     * Constructor.
+     *
+     * @param editor host editor
+     * @param hostHighlighter brace highlighter of the host file
+     * @param fragment injected fragment around the caret
+     * @param psiFile injected file of the fragment
+     */
+    private InjectedBraceHighlighter(Editor editor, BraceHighlighter hostHighlighter,
+                                     InjectedFragmentCache.Fragment fragment, PsiFile psiFile) {
+        super(editor);
+        this.hostHighlighter = hostHighlighter;
+        this.fragment = fragment;
+        this.psiFile = psiFile;
+        this.fileType = fragment.getFileType();
+        this.fileText = fragment.getText();
+    }
+
+    /**
+     * Get the brace highlighter of the injected fragment around the offset.
+     *
+     * @param editor host editor
+     * @param hostHighlighter brace highlighter of the host file
+     * @param offset caret offset
+     * @return injected brace highlighter, null if the offset is not in a supported fragment
+     */
+    static BraceHighlighter getInstance(Editor editor, BraceHighlighter hostHighlighter, int offset) {
+        InjectedFragmentCache.Fragment fragment = InjectedFragmentCache.getFragment(
+                editor, hostHighlighter.psiFile, hostHighlighter.getTokenSnapshot(), offset);
+        // the injected file is weakly referenced by the cached fragment
+        PsiFile psiFile = fragment != null ? fragment.getPsiFile() : null;
+        if (psiFile == null ||
+                !DefaultBraceHighlighter.isBraceMatcherSupported(fragment.getLanguage()) ||
+                !HighlightBracketPairSettings.getInstance().isLanguageEnabled(fragment.getLanguage()))
+            return null;
+        return new InjectedBraceHighlighter(editor, hostHighlighter, fragment, psiFile);
+    }
+
+    /**
+     * Get the brace pairs of the injected language.
+     *
+     * @return injected language brace pairs
+     */
+    @Override
+    public List<Pair<IElementType, IElementType>> getSupportedBraceToken() {
+        List<Pair<IElementType, IElementType>> braceList =
+                DefaultBraceHighlighter.LanguageBracePairs.get(fragment.getLanguage());
+        return braceList == null ? super.getSupportedBraceToken() : braceList;
+    }
+
+    /**
+     * Get the brace token snapshot of the fragment, cached until the fragment is changed.
+     *
+     * @return brace token snapshot
+     */
+    @Override
+    protected BraceTokenSnapshot getTokenSnapshot() {
+        return fragment.getSnapshot();
+    }
+
+    /**
+     * The gaps of the fragment are not the gaps of the host, the pairs are not cached.
+     *
+     * @param offset host offset
+     * @return null
+     */
+    @Override
+    public TextRange getSamePairsRange(int offset) {
+        return null;
+    }
+
+    @Override
+    public List<Integer> getNeighbourOffsets(int offset, BracePair bracePair, int gaps) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * The fragment is parsed again after the edit, the pairs are found again.
+     *
+     * @param text document text after the edit
+     * @param offset edit offset
+     * @param oldText removed text
+     * @param newText inserted text
+     * @return false
+     */
+    @Override
+    public boolean isStructureSafeEdit(CharSequence text, int offset, CharSequence oldText, CharSequence newText) {
+        return false;
+    }
+
+    /**
+     * Find the closest pair in the fragment, or in the host if not found.
+     *
+     * @param offset host offset
+     * @return brace pair in the host offsets
+     */
+    @Override
+    public BracePair findClosetBracePair(int offset) {
+        BracePair bracePair = toHostBracePair(super.findClosetBracePair(fragment.hostToInjected(offset)));
+        return bracePair != EMPTY_BRACE_PAIR ? bracePair : hostHighlighter.findClosetBracePair(offset);
+    }
+
+    /**
+     * Find the enclosing pairs in the fragment, then the enclosing pairs in the host.
+     *
+     * @param offset host offset
+     * @param maxLevels max levels to be found
+     * @return enclosing brace pairs in the host offsets, innermost first
+     */
+    @Override
+    public List<BracePair> findClosetBracePairs(int offset, int maxLevels) {
+        List<BracePair> bracePairs = new ArrayList<>(maxLevels);
+        for (BracePair bracePair : super.findClosetBracePairs(fragment.hostToInjected(offset), maxLevels)) {
+            BracePair hostBracePair = toHostBracePair(bracePair);
+            if (hostBracePair == EMPTY_BRACE_PAIR)
+                break;
+            bracePairs.add(hostBracePair);
+        }
+        if (bracePairs.size() < maxLevels)
+            bracePairs.addAll(hostHighlighter.findClosetBracePairs(offset, maxLevels - bracePairs.size()));
+        return bracePairs;
+    }
+
+    /**
+     * Find the innermost pair enclosing the offset in the fragment, or in the host
+     * if not found.
+     *
+     * @param offset host offset
+     * @return enclosing brace pair in the host offsets
+     */
+    @Override
+    public BracePair findEnclosingBracePair(int offset) {
+        if (fragment.containsHostOffset(offset)) {
+            BracePair bracePair = toHostBracePair(super.findEnclosingBracePair(fragment.hostToInjected(offset)));
+            if (bracePair != EMPTY_BRACE_PAIR)
+                return bracePair;
+        }
+        return hostHighlighter.findEnclosingBracePair(offset);
+    }
+
+    /**
+     * Find the brace at the offset and its partner in the fragment, or in the host
+     * if not found.
+     *
+     * @param offset host offset of the brace
+     * @return brace pair in the host offsets
+     */
+    @Override
+    public BracePair findPartnerBracePair(int offset) {
+        if (fragment.containsHostOffset(offset)) {
+            BracePair bracePair = toHostBracePair(super.findPartnerBracePair(fragment.hostToInjected(offset)));
+            if (bracePair != EMPTY_BRACE_PAIR)
+                return bracePair;
+        }
+        return hostHighlighter.findPartnerBracePair(offset);
+    }
+
+    /**
+     * Count the host pairs enclosing the offset and the fragment pairs enclosing it.
+     *
+     * @param offset host offset
+     * @return depth, 0 at the top level of the host
+     */
+    @Override
+    public int getBraceDepth(int offset) {
+        int depth = hostHighlighter.getBraceDepth(offset);
+        if (fragment.containsHostOffset(offset))
+            depth += super.getBraceDepth(fragment.hostToInjected(offset));
+        return depth;
+    }
+
+    /**
+     * Find the host pairs and the fragment pairs whose both braces are in the range.
+     *
+     * @param range host text range
+     * @return brace pairs in the host offsets ordered by the left brace offset
+     */
+    @Override
+    public List<BracePair> findBracePairsInRange(TextRange range) {
+        List<BracePair> bracePairs = hostHighlighter.findBracePairsInRange(range);
+        for (BracePair bracePair : super.findBracePairsInRange(new TextRange(0, this.fileText.length()))) {
+            BracePair hostBracePair = toHostBracePair(bracePair);
+            if (hostBracePair != EMPTY_BRACE_PAIR &&
+                    range.getStartOffset() <= hostBracePair.getLeftBrace().getOffset() &&
+                    hostBracePair.getRightBrace().getOffset() + hostBracePair.getRightBrace().getText().length()
+                            <= range.getEndOffset())
+                bracePairs.add(hostBracePair);
+        }
+        bracePairs.sort(Comparator.comparingInt(bracePair -> bracePair.getLeftBrace().getOffset()));
+        return bracePairs;
+    }
+
+    /**
+     * Map the pair found in the fragment to the host, the pair is dropped if
+     * the brace is not in the host text as is, such as the escaped or the prefix brace.
+     */
+    private BracePair toHostBracePair(BracePair bracePair) {
+        Brace leftBrace = bracePair.getLeftBrace();
+        Brace rightBrace = bracePair.getRightBrace();
+        if (leftBrace.getOffset() == NON_OFFSET || rightBrace.getOffset() == NON_OFFSET)
+            return EMPTY_BRACE_PAIR;
+        int leftOffset = fragment.injectedToHost(leftBrace.getOffset());
+        int rightOffset = fragment.injectedToHost(rightBrace.getOffset());
+        if (!isHostText(leftOffset, leftBrace.getText()) || !isHostText(rightOffset, rightBrace.getText()))
+            return EMPTY_BRACE_PAIR;
+        return new BracePair.BracePairBuilder().
+                leftType(leftBrace.getElementType()).
+                rightType(rightBrace.getElementType()).
+                leftText(leftBrace.getText()).
+                rightText(rightBrace.getText()).
+                leftOffset(leftOffset).
+                rightOffset(rightOffset).build();
+    }
+
+    private boolean isHostText(int hostOffset, String text) {
+        CharSequence hostText = hostHighlighter.fileText;
+        if (hostOffset < 0 || hostOffset + text.length() > hostText.length())
+            return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (hostText.charAt(hostOffset + i) != text.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
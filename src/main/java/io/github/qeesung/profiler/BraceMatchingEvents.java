@@ -0,0 +1,328 @@
+package io.github.qeesung.profiler;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Emit the JDK Flight Recorder events of the brace matching, so the recording shows
+ * which files and caret positions are expensive.
+ * <p>
+ * The plugin is compiled by the JDK 8 without {@code jdk.jfr}, so the event types are
+ * defined at runtime by the {@code jdk.jfr.EventFactory} looked up by reflection. The
+ * events are only created if the flight recorder is available in the running JDK and
+ * the event is enabled in the recording, otherwise {@code begin*} returns null and
+ * {@code commit*} does nothing.
+ */
+public class BraceMatchingEvents {
+    public final static String OUTCOME_PAIR = "pair";
+    public final static String OUTCOME_STRING = "string";
+    public final static String OUTCOME_NO_PAIR = "no pair";
+    public final static String OUTCOME_SKIPPED = "skipped";
+    public final static String OUTCOME_CACHED = "cached";
+    public final static String LEFT = "left";
+    public final static String RIGHT = "right";
+
+    /**
+     * Events should not be instantiated.
+     */
+    private BraceMatchingEvents() {
+    }
+
+    /**
+     * Begin the event of finding the brace pairs around the caret.
+     *
+     * @return event, null if not recorded
+     */
+    public static Object beginBracketMatching() {
+        return Recorder.beginBracketMatching();
+    }
+
+    /**
+     * Commit the event of finding the brace pairs around the caret.
+     *
+     * @param event event returned by {@link #beginBracketMatching()}
+     * @param fileLength file length
+     * @param language language id
+     * @param caretOffset caret offset
+     * @param leftDistance distance from the caret to the left brace, -1 if not found
+     * @param rightDistance distance from the caret to the right brace, -1 if not found
+     * @param tokensVisited tokens visited by the left and right scans
+     * @param outcome outcome
+     */
+    public static void commitBracketMatching(Object event, int fileLength, String language, int caretOffset,
+                                             int leftDistance, int rightDistance, int tokensVisited,
+                                             String outcome) {
+        if (event != null)
+            Recorder.commitBracketMatching(event, fileLength, language, caretOffset,
+                    leftDistance, rightDistance, tokensVisited, outcome);
+    }
+
+    /**
+     * Begin the event of one left or right brace scan.
+     *
+     * @return event, null if not recorded
+     */
+    public static Object beginScan() {
+        return Recorder.beginScan();
+    }
+
+    /**
+     * Commit the event of one left or right brace scan.
+     *
+     * @param event event returned by {@link #beginScan()}
+     * @param direction {@link #LEFT} or {@link #RIGHT}
+     * @param language language id
+     * @param caretOffset caret offset
+     * @param distance distance from the caret to the found brace, -1 if not found
+     * @param tokensVisited tokens visited
+     */
+    public static void commitScan(Object event, String direction, String language, int caretOffset,
+                                  int distance, int tokensVisited) {
+        if (event != null)
+            Recorder.commitScan(event, direction, language, caretOffset, distance, tokensVisited);
+    }
+
+    /**
+     * Begin the event of the caret moves coalesced into one frame, begun by the
+     * first move not highlighted in the frame.
+     *
+     * @return event, null if not recorded
+     */
+    public static Object beginFrameCoalescing() {
+        return Recorder.beginFrameCoalescing();
+    }
+
+    /**
+     * Commit the event of the caret moves coalesced into one frame.
+     *
+     * @param event event returned by {@link #beginFrameCoalescing()}
+     * @param caretOffset caret offset highlighted by the frame
+     * @param coalescedMoves caret moves not highlighted in the frame
+     */
+    public static void commitFrameCoalescing(Object event, int caretOffset, int coalescedMoves) {
+        if (event != null)
+            Recorder.commitFrameCoalescing(event, caretOffset, coalescedMoves);
+    }
+
+    /**
+     * Begin the event of replacing the brace highlighters.
+     *
+     * @return event, null if not recorded
+     */
+    public static Object beginHighlightUpdate() {
+        return Recorder.beginHighlightUpdate();
+    }
+
+    /**
+     * Commit the event of replacing the brace highlighters.
+     *
+     * @param event event returned by {@link #beginHighlightUpdate()}
+     * @param mode rendering mode
+     * @param pairs highlighted pairs
+     */
+    public static void commitHighlightUpdate(Object event, String mode, int pairs) {
+        if (event != null)
+            Recorder.commitHighlightUpdate(event, mode, pairs);
+    }
+
+    /**
+     * The event types, defined on the first event if the flight recorder is available.
+     */
+    private static class Recorder {
+        private final static String CATEGORY = "HighlightBracketPair";
+        private final static EventDefinition BRACKET_MATCHING = EventDefinition.define(
+                "io.github.qeesung.BracketMatching", "Bracket Matching",
+                int.class, "fileLength", "File Length",
+                String.class, "language", "Language",
+                int.class, "caretOffset", "Caret Offset",
+                int.class, "leftDistance", "Left Brace Distance",
+                int.class, "rightDistance", "Right Brace Distance",
+                int.class, "tokensVisited", "Tokens Visited",
+                String.class, "outcome", "Outcome");
+        private final static EventDefinition BRACE_SCAN = EventDefinition.define(
+                "io.github.qeesung.BraceScan", "Brace Scan",
+                String.class, "direction", "Direction",
+                String.class, "language", "Language",
+                int.class, "caretOffset", "Caret Offset",
+                int.class, "distance", "Brace Distance",
+                int.class, "tokensVisited", "Tokens Visited");
+        private final static EventDefinition FRAME_COALESCING = EventDefinition.define(
+                "io.github.qeesung.FrameCoalescing", "Frame Coalescing",
+                int.class, "caretOffset", "Caret Offset",
+                int.class, "coalescedMoves", "Coalesced Caret Moves");
+        private final static EventDefinition HIGHLIGHT_UPDATE = EventDefinition.define(
+                "io.github.qeesung.HighlightUpdate", "Highlight Update",
+                String.class, "mode", "Rendering Mode",
+                int.class, "pairs", "Pairs");
+
+        private static Object beginBracketMatching() {
+            return BRACKET_MATCHING == null ? null : BRACKET_MATCHING.begin();
+        }
+
+        private static void commitBracketMatching(Object event, int fileLength, String language,
+                                                  int caretOffset, int leftDistance, int rightDistance,
+                                                  int tokensVisited, String outcome) {
+            BRACKET_MATCHING.commit(event, fileLength, language, caretOffset, leftDistance, rightDistance,
+                    tokensVisited, outcome);
+        }
+
+        private static Object beginScan() {
+            return BRACE_SCAN == null ? null : BRACE_SCAN.begin();
+        }
+
+        private static void commitScan(Object event, String direction, String language,
+                                       int caretOffset, int distance, int tokensVisited) {
+            BRACE_SCAN.commit(event, direction, language, caretOffset, distance, tokensVisited);
+        }
+
+        private static Object beginFrameCoalescing() {
+            return FRAME_COALESCING == null ? null : FRAME_COALESCING.begin();
+        }
+
+        private static void commitFrameCoalescing(Object event, int caretOffset, int coalescedMoves) {
+            FRAME_COALESCING.commit(event, caretOffset, coalescedMoves);
+        }
+
+        private static Object beginHighlightUpdate() {
+            return HIGHLIGHT_UPDATE == null ? null : HIGHLIGHT_UPDATE.begin();
+        }
+
+        private static void commitHighlightUpdate(Object event, String mode, int pairs) {
+            HIGHLIGHT_UPDATE.commit(event, mode, pairs);
+        }
+    }
+
+    /**
+     * One event type defined by the {@code jdk.jfr.EventFactory}, the event fields are
+     * set by their index.
+     */
+    private static class EventDefinition {
+        private final static MethodHandle NEW_EVENT;
+        private final static MethodHandle IS_ENABLED;
+        private final static MethodHandle BEGIN;
+        private final static MethodHandle END;
+        private final static MethodHandle SHOULD_COMMIT;
+        private final static MethodHandle SET;
+        private final static MethodHandle COMMIT;
+
+        static {
+            MethodHandle newEvent = null;
+            MethodHandle isEnabled = null;
+            MethodHandle begin = null;
+            MethodHandle end = null;
+            MethodHandle shouldCommit = null;
+            MethodHandle set = null;
+            MethodHandle commit = null;
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                Class<?> eventClass = Class.forName("jdk.jfr.Event");
+                newEvent = lookup.unreflect(Class.forName("jdk.jfr.EventFactory").getMethod("newEvent"));
+                isEnabled = lookup.unreflect(Class.forName("jdk.jfr.EventType").getMethod("isEnabled"));
+                begin = lookup.unreflect(eventClass.getMethod("begin"));
+                end = lookup.unreflect(eventClass.getMethod("end"));
+                shouldCommit = lookup.unreflect(eventClass.getMethod("shouldCommit"));
+                set = lookup.unreflect(eventClass.getMethod("set", int.class, Object.class));
+                commit = lookup.unreflect(eventClass.getMethod("commit"));
+            } catch (Throwable e) {
+                // no flight recorder in the running JDK
+                newEvent = null;
+            }
+            NEW_EVENT = newEvent;
+            IS_ENABLED = isEnabled;
+            BEGIN = begin;
+            END = end;
+            SHOULD_COMMIT = shouldCommit;
+            SET = set;
+            COMMIT = commit;
+        }
+
+        private final Object factory;
+        private final Object eventType;
+
+        private EventDefinition(Object factory, Object eventType) {
+            this.factory = factory;
+            this.eventType = eventType;
+        }
+
+        /**
+         * Define the event type.
+         *
+         * @param name event name
+         * @param label event label
+         * @param fields the type, the name and the label of every field
+         * @return event type, null if the flight recorder is not available
+         */
+        private static EventDefinition define(String name, String label, Object... fields) {
+            if (NEW_EVENT == null)
+                return null;
+            try {
+                Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+                Constructor<?> annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+                Constructor<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor")
+                        .getConstructor(Class.class, String.class, List.class);
+                Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+                Method create = factoryClass.getMethod("create", List.class, List.class);
+
+                List<Object> annotations = Arrays.asList(
+                        annotationElement.newInstance(Class.forName("jdk.jfr.Name"), name),
+                        annotationElement.newInstance(Class.forName("jdk.jfr.Label"), label),
+                        annotationElement.newInstance(Class.forName("jdk.jfr.Category"),
+                                new String[]{Recorder.CATEGORY}),
+                        annotationElement.newInstance(Class.forName("jdk.jfr.StackTrace"), false));
+                List<Object> descriptors = new ArrayList<>();
+                for (int i = 0; i < fields.length; i += 3) {
+                    Object fieldLabel = annotationElement.newInstance(Class.forName("jdk.jfr.Label"), fields[i + 2]);
+                    descriptors.add(valueDescriptor.newInstance(fields[i], fields[i + 1],
+                            Collections.singletonList(fieldLabel)));
+                }
+                Object factory = create.invoke(null, annotations, descriptors);
+                Object eventType = factoryClass.getMethod("getEventType").invoke(factory);
+                return new EventDefinition(factory, eventType);
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+
+        /**
+         * Begin the event if the event type is enabled in the recording.
+         *
+         * @return event, null if not recorded
+         */
+        private Object begin() {
+            try {
+                if (!(boolean) IS_ENABLED.invoke(eventType))
+                    return null;
+                Object event = NEW_EVENT.invoke(factory);
+                BEGIN.invoke(event);
+                return event;
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+
+        /**
+         * End the event and commit it with the field values.
+         *
+         * @param event event returned by {@link #begin()}
+         * @param values field values in the defined order
+         */
+        private void commit(Object event, Object... values) {
+            try {
+                END.invoke(event);
+                if (!(boolean) SHOULD_COMMIT.invoke(event))
+                    return;
+                for (int i = 0; i < values.length; i++)
+                    SET.invoke(event, i, values[i]);
+                COMMIT.invoke(event);
+            } catch (Throwable e) {
+                // the event is dropped, the recording must not break the highlighting
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package io.github.qeesung.service;
+
+import com.intellij.lang.Language;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import io.github.qeesung.adapter.BraceTokenSnapshotBuilder;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.brace.BraceTokenSnapshot;
+import io.github.qeesung.highlighter.BraceHighlighter;
+import io.github.qeesung.highlighter.BracketStructure;
+import io.github.qeesung.highlighter.DefaultBraceHighlighter;
+import io.github.qeesung.highlighter.HighlightEditorKind;
+import io.github.qeesung.setting.HighlightBracketPairSettings;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Project service to query the bracket structure of the editor, the document or
+ * the file for the other plugins and actions, answered from the brace token
+ * snapshot shared with the highlighting, so the consumers do not scan the same
+ * document again.
+ * <p>
+ * The document and the file are answered from the snapshot of their editor, the
+ * editor sharing the document state first, a document not opened in any editor
+ * is lexed once per version. The structure matches the brace tokens of the languages
+ * with a brace matcher, independent of the caret shape, the files too large or the
+ * languages disabled in the settings have no structure. The queries take a read action.
+ */
+public class BracketStructureService {
+    private final Project project;
+
+    /**
+     * Constructor.
+     *
+     * @param project project
+     */
+    public BracketStructureService(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Get the service instance of the project.
+     *
+     * @param project project
+     * @return service instance
+     */
+    public static BracketStructureService getInstance(Project project) {
+        return ServiceManager.getService(project, BracketStructureService.class);
+    }
+
+    /**
+     * Get the innermost pair enclosing the offset, the pair encloses the offsets
+     * from the left brace end to the right brace start.
+     *
+     * @param editor editor of the project
+     * @param offset offset
+     * @return enclosing brace pair, {@link BraceHighlighter#EMPTY_BRACE_PAIR} if not enclosed
+     */
+    public BracePair getEnclosingPair(Editor editor, int offset) {
+        return ApplicationManager.getApplication().runReadAction((Computable<BracePair>) () ->
+                getEnclosingPair(getBracketStructure(editor), offset));
+    }
+
+    /**
+     * Get the innermost pair enclosing the offset of the document.
+     *
+     * @param document document of the project
+     * @param offset offset
+     * @return enclosing brace pair, {@link BraceHighlighter#EMPTY_BRACE_PAIR} if not enclosed
+     */
+    public BracePair getEnclosingPair(Document document, int offset) {
+        return ApplicationManager.getApplication().runReadAction((Computable<BracePair>) () ->
+                getEnclosingPair(getBracketStructure(document), offset));
+    }
+
+    /**
+     * Get the innermost pair enclosing the offset of the file.
+     *
+     * @param psiFile file of the project
+     * @param offset offset
+     * @return enclosing brace pair, {@link BraceHighlighter#EMPTY_BRACE_PAIR} if not enclosed
+     */
+    public BracePair getEnclosingPair(PsiFile psiFile, int offset) {
+        return ApplicationManager.getApplication().runReadAction((Computable<BracePair>) () ->
+                getEnclosingPair(getBracketStructure(getDocument(psiFile)), offset));
+    }
+
+    /**
+     * Get the pair of the brace at the offset and its partner.
+     *
+     * @param editor editor of the project
+     * @param offset offset of the brace
+     * @return brace pair, {@link BraceHighlighter#EMPTY_BRACE_PAIR} if no brace is
+     * at the offset or the brace is unmatched
+     */
+    public BracePair getPartner(Editor editor, int offset) {
+        return ApplicationManager.getApplication().runReadAction((Computable<BracePair>) () ->
+                getPartner(getBracketStructure(editor), offset));
+    }
+
+    /**
+     * Get the pair of the brace at the offset of the document and its partner.
+     *
+     * @param document document of the project
+     * @param offset offset of the brace
+     * @return brace pair, {@link BraceHighlighter#EMPTY_BRACE_PAIR} if no brace is
+     * at the offset or the brace is unmatched
+     */
+    public BracePair getPartner(Document document, int offset) {
+        return ApplicationManager.getApplication().runReadAction((Computable<BracePair>) () ->
+                getPartner(getBracketStructure(document), offset));
+    }
+
+    /**
+     * Get the pair of the brace at the offset of the file and its partner.
+     *
+     * @param psiFile file of the project
+     * @param offset offset of the brace
+     * @return brace pair, {@link BraceHighlighter#EMPTY_BRACE_PAIR} if no brace is
+     * at the offset or the brace is unmatched
+     */
+    public BracePair getPartner(PsiFile psiFile, int offset) {
+        return ApplicationManager.getApplication().runReadAction((Computable<BracePair>) () ->
+                getPartner(getBracketStructure(getDocument(psiFile)), offset));
+    }
+
+    /**
+     * Get the count of the pairs enclosing the offset.
+     *
+     * @param editor editor of the project
+     * @param offset offset
+     * @return depth, 0 at the top level
+     */
+    public int getDepth(Editor editor, int offset) {
+        return ApplicationManager.getApplication().runReadAction((Computable<Integer>) () ->
+                getDepth(getBracketStructure(editor), offset));
+    }
+
+    /**
+     * Get the count of the pairs enclosing the offset of the document.
+     *
+     * @param document document of the project
+     * @param offset offset
+     * @return depth, 0 at the top level
+     */
+    public int getDepth(Document document, int offset) {
+        return ApplicationManager.getApplication().runReadAction((Computable<Integer>) () ->
+                getDepth(getBracketStructure(document), offset));
+    }
+
+    /**
+     * Get the count of the pairs enclosing the offset of the file.
+     *
+     * @param psiFile file of the project
+     * @param offset offset
+     * @return depth, 0 at the top level
+     */
+    public int getDepth(PsiFile psiFile, int offset) {
+        return ApplicationManager.getApplication().runReadAction((Computable<Integer>) () ->
+                getDepth(getBracketStructure(getDocument(psiFile)), offset));
+    }
+
+    /**
+     * Get the pairs whose both braces are in the range.
+     *
+     * @param editor editor of the project
+     * @param range text range
+     * @return brace pairs ordered by the left brace offset
+     */
+    public List<BracePair> getPairsInRange(Editor editor, TextRange range) {
+        return ApplicationManager.getApplication().runReadAction((Computable<List<BracePair>>) () ->
+                getPairsInRange(getBracketStructure(editor), range));
+    }
+
+    /**
+     * Get the pairs of the document whose both braces are in the range.
+     *
+     * @param document document of the project
+     * @param range text range
+     * @return brace pairs ordered by the left brace offset
+     */
+    public List<BracePair> getPairsInRange(Document document, TextRange range) {
+        return ApplicationManager.getApplication().runReadAction((Computable<List<BracePair>>) () ->
+                getPairsInRange(getBracketStructure(document), range));
+    }
+
+    /**
+     * Get the pairs of the file whose both braces are in the range.
+     *
+     * @param psiFile file of the project
+     * @param range text range
+     * @return brace pairs ordered by the left brace offset
+     */
+    public List<BracePair> getPairsInRange(PsiFile psiFile, TextRange range) {
+        return ApplicationManager.getApplication().runReadAction((Computable<List<BracePair>>) () ->
+                getPairsInRange(getBracketStructure(getDocument(psiFile)), range));
+    }
+
+    private static BracePair getEnclosingPair(BracketStructure structure, int offset) {
+        return structure == null ? BraceHighlighter.EMPTY_BRACE_PAIR : structure.findEnclosingBracePair(offset);
+    }
+
+    private static BracePair getPartner(BracketStructure structure, int offset) {
+        return structure == null ? BraceHighlighter.EMPTY_BRACE_PAIR : structure.findPartnerBracePair(offset);
+    }
+
+    private static int getDepth(BracketStructure structure, int offset) {
+        return structure == null ? 0 : structure.getBraceDepth(offset);
+    }
+
+    private static List<BracePair> getPairsInRange(BracketStructure structure, TextRange range) {
+        return structure == null ? Collections.<BracePair>emptyList() : structure.findBracePairsInRange(range);
+    }
+
+    /**
+     * Get the structure from the snapshot of the editor, cached in the document
+     * state if the editor shares it.
+     */
+    private BracketStructure getBracketStructure(Editor editor) {
+        if (editor == null || editor.isDisposed() || editor.getProject() != project)
+            return null;
+        PsiFile psiFile = getSupportedFile(editor.getDocument());
+        return psiFile == null ? null : getBracketStructure(editor, psiFile);
+    }
+
+    /**
+     * Get the structure from the snapshot of an editor of the document, or from
+     * the snapshot of the document if it is not opened in any editor.
+     */
+    private BracketStructure getBracketStructure(Document document) {
+        PsiFile psiFile = getSupportedFile(document);
+        if (psiFile == null)
+            return null;
+        Editor documentEditor = null;
+        for (Editor editor : EditorFactory.getInstance().getEditors(document, project)) {
+            if (editor.isDisposed())
+                continue;
+            if (HighlightEditorKind.of(editor).isDocumentStateShared())
+                return getBracketStructure(editor, psiFile);
+            if (documentEditor == null)
+                documentEditor = editor;
+        }
+        if (documentEditor != null)
+            return getBracketStructure(documentEditor, psiFile);
+        BraceTokenSnapshot snapshot = BraceTokenSnapshotBuilder.getDetachedSnapshot(document, psiFile,
+                HighlightBracketPairSettings.getInstance().getKeywordPairs(psiFile.getLanguage()));
+        return new BracketStructure(snapshot, document.getImmutableCharSequence());
+    }
+
+    private static BracketStructure getBracketStructure(Editor editor, PsiFile psiFile) {
+        CharSequence text = editor.getDocument().getImmutableCharSequence();
+        BraceTokenSnapshot snapshot = BraceTokenSnapshotBuilder.getSnapshot(editor, text, psiFile.getFileType(),
+                HighlightBracketPairSettings.getInstance().getKeywordPairs(psiFile.getLanguage()),
+                HighlightEditorKind.of(editor).isDocumentStateShared());
+        return new BracketStructure(snapshot, text);
+    }
+
+    private Document getDocument(PsiFile psiFile) {
+        if (psiFile == null || !psiFile.isValid() || psiFile.getProject() != project)
+            return null;
+        return PsiDocumentManager.getInstance(project).getDocument(psiFile);
+    }
+
+    /**
+     * Get the file of the document if its language has a brace matcher and is
+     * enabled in the settings, and the file is not too large.
+     */
+    private PsiFile getSupportedFile(Document document) {
+        if (document == null)
+            return null;
+        PsiFile psiFile = PsiDocumentManager.getInstance(project).getPsiFile(document);
+        if (psiFile == null)
+            return null;
+        Language language = psiFile.getLanguage();
+        HighlightBracketPairSettings settings = HighlightBracketPairSettings.getInstance();
+        if (document.getTextLength() > settings.getMaxFileSize() || !settings.isLanguageEnabled(language) ||
+                !DefaultBraceHighlighter.isBraceMatcherSupported(language))
+            return null;
+        return psiFile;
+    }
+}
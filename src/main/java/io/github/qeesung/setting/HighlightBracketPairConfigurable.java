@@ -0,0 +1,249 @@
+package io.github.qeesung.setting;
+
+import com.intellij.lang.Language;
+import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.openapi.options.SearchableConfigurable;
+import com.intellij.ui.CheckBoxList;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.ui.FormBuilder;
+import io.github.qeesung.component.HighlightBracketPairApplicationComponent;
+import io.github.qeesung.highlighter.DefaultBraceHighlighter;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Performance settings of the plugin, the changes are applied to
+ * all the opened editors immediately.
+ */
+public class HighlightBracketPairConfigurable implements SearchableConfigurable {
+    private JSpinner maxFileSizeSpinner;
+    private JSpinner debounceDelaySpinner;
+    private JSpinner scanLimitSpinner;
+    private JSpinner enclosingPairLevelsSpinner;
+    private JBCheckBox rainbowCheckBox;
+    private JBCheckBox backgroundComputationCheckBox;
+    private JSpinner fallbackMaxDistanceSpinner;
+    private JBCheckBox fallbackQuoteAwareCheckBox;
+    private JBCheckBox customRendererCheckBox;
+    private JBCheckBox highlightInjectedFragmentsCheckBox;
+    private JSpinner throttleIntervalSpinner;
+    private JSpinner memoryBudgetSpinner;
+    private JComboBox<HighlightPolicy> consolePolicyComboBox;
+    private JComboBox<HighlightPolicy> logPolicyComboBox;
+    private JComboBox<HighlightPolicy> diffPolicyComboBox;
+    private JComboBox<HighlightPolicy> viewerPolicyComboBox;
+    private JTextArea keywordPairsTextArea;
+    private CheckBoxList<Language> languageCheckBoxList;
+    private List<Language> languages;
+
+    @NotNull
+    @Override
+    public String getId() {
+        return "io.github.qeesung.setting.HighlightBracketPairConfigurable";
+    }
+
+    @Nullable
+    @Override
+    public Runnable enableSearch(String option) {
+        return null;
+    }
+
+    @Nls
+    @Override
+    public String getDisplayName() {
+        return "HighlightBracketPair";
+    }
+
+    @Nullable
+    @Override
+    public String getHelpTopic() {
+        return null;
+    }
+
+    /**
+     * Create the settings form.
+     *
+     * @return settings form
+     */
+    @Nullable
+    @Override
+    public JComponent createComponent() {
+        maxFileSizeSpinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 1024));
+        debounceDelaySpinner = new JSpinner(new SpinnerNumberModel(0, 0, 5000, 10));
+        scanLimitSpinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 1000));
+        enclosingPairLevelsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 32, 1));
+        rainbowCheckBox = new JBCheckBox("Rainbow: highlight the enclosing pairs with dimmer colors");
+        backgroundComputationCheckBox = new JBCheckBox("Find the brace pair in background");
+        fallbackMaxDistanceSpinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 1000));
+        fallbackQuoteAwareCheckBox = new JBCheckBox("Ignore the braces in quotes without brace matcher");
+        customRendererCheckBox = new JBCheckBox("Paint the pairs by one renderer, the brace foreground is kept");
+        highlightInjectedFragmentsCheckBox = new JBCheckBox("Highlight the pairs inside the injected language fragments");
+        throttleIntervalSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 5000, 10));
+        memoryBudgetSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 4096, 8));
+        consolePolicyComboBox = new JComboBox<>(HighlightPolicy.values());
+        logPolicyComboBox = new JComboBox<>(HighlightPolicy.values());
+        diffPolicyComboBox = new JComboBox<>(HighlightPolicy.values());
+        viewerPolicyComboBox = new JComboBox<>(HighlightPolicy.values());
+        keywordPairsTextArea = new JTextArea(4, 40);
+
+        // the languages without a brace matcher are highlighted by the text
+        languages = new ArrayList<>();
+        for (Language language : Language.getRegisteredLanguages()) {
+            if (language != Language.ANY)
+                languages.add(language);
+        }
+        languages.sort((l, r) -> l.getDisplayName().compareToIgnoreCase(r.getDisplayName()));
+        languageCheckBoxList = new CheckBoxList<>();
+        languageCheckBoxList.setItems(languages, language ->
+                DefaultBraceHighlighter.isBraceMatcherSupported(language) ?
+                        language.getDisplayName() : language.getDisplayName() + " (text matching)");
+
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent("Max file size (chars):", maxFileSizeSpinner)
+                .addLabeledComponent("Debounce delay (ms, 0 for none):", debounceDelaySpinner)
+                .addLabeledComponent("Scan limit (tokens, 0 for no limit):", scanLimitSpinner)
+                .addComponent(rainbowCheckBox)
+                .addLabeledComponent("Rainbow levels:", enclosingPairLevelsSpinner)
+                .addComponent(backgroundComputationCheckBox)
+                .addLabeledComponent("Max distance without brace matcher (chars):", fallbackMaxDistanceSpinner)
+                .addComponent(fallbackQuoteAwareCheckBox)
+                .addComponent(customRendererCheckBox)
+                .addComponent(highlightInjectedFragmentsCheckBox)
+                .addLabeledComponent("Throttle interval (ms):", throttleIntervalSpinner)
+                .addLabeledComponent("Cache memory budget (MB, 0 for no limit):", memoryBudgetSpinner)
+                .addLabeledComponent("Consoles:", consolePolicyComboBox)
+                .addLabeledComponent("Log files:", logPolicyComboBox)
+                .addLabeledComponent("Diff viewers:", diffPolicyComboBox)
+                .addLabeledComponent("Read only viewers:", viewerPolicyComboBox)
+                .addLabeledComponent("Keyword pairs, one language per line (language id: openers / closers; ...):",
+                        new JBScrollPane(keywordPairsTextArea), true)
+                .addLabeledComponent("Enabled languages:",
+                        new JBScrollPane(languageCheckBoxList), true)
+                .getPanel();
+    }
+
+    @Override
+    public boolean isModified() {
+        HighlightBracketPairPluginState state = getPluginState();
+        return state.getMaxFileSize() != (Integer) maxFileSizeSpinner.getValue()
+                || state.getDebounceDelay() != (Integer) debounceDelaySpinner.getValue()
+                || state.getScanLimit() != (Integer) scanLimitSpinner.getValue()
+                || state.getEnclosingPairLevels() != (Integer) enclosingPairLevelsSpinner.getValue()
+                || state.isHighlightEnclosingPairs() != rainbowCheckBox.isSelected()
+                || state.isBackgroundComputation() != backgroundComputationCheckBox.isSelected()
+                || state.getFallbackMaxDistance() != (Integer) fallbackMaxDistanceSpinner.getValue()
+                || state.isFallbackQuoteAware() != fallbackQuoteAwareCheckBox.isSelected()
+                || state.isCustomRenderer() != customRendererCheckBox.isSelected()
+                || state.isHighlightInjectedFragments() != highlightInjectedFragmentsCheckBox.isSelected()
+                || state.getThrottleInterval() != (Integer) throttleIntervalSpinner.getValue()
+                || state.getMemoryBudget() != (Integer) memoryBudgetSpinner.getValue()
+                || state.getConsolePolicy() != consolePolicyComboBox.getSelectedItem()
+                || state.getLogPolicy() != logPolicyComboBox.getSelectedItem()
+                || state.getDiffPolicy() != diffPolicyComboBox.getSelectedItem()
+                || state.getViewerPolicy() != viewerPolicyComboBox.getSelectedItem()
+                || !getKeywordPairs().equals(state.getKeywordPairs())
+                || !state.getDisabledLanguageIds().equals(getDisabledLanguageIds());
+    }
+
+    /**
+     * Save the form to the plugin state, and refresh all the opened editors.
+     *
+     * @throws ConfigurationException configuration exception
+     */
+    @Override
+    public void apply() throws ConfigurationException {
+        HighlightBracketPairPluginState state = getPluginState();
+        state.setMaxFileSize((Integer) maxFileSizeSpinner.getValue());
+        state.setDebounceDelay((Integer) debounceDelaySpinner.getValue());
+        state.setScanLimit((Integer) scanLimitSpinner.getValue());
+        state.setEnclosingPairLevels((Integer) enclosingPairLevelsSpinner.getValue());
+        state.setHighlightEnclosingPairs(rainbowCheckBox.isSelected());
+        state.setBackgroundComputation(backgroundComputationCheckBox.isSelected());
+        state.setFallbackMaxDistance((Integer) fallbackMaxDistanceSpinner.getValue());
+        state.setFallbackQuoteAware(fallbackQuoteAwareCheckBox.isSelected());
+        state.setCustomRenderer(customRendererCheckBox.isSelected());
+        state.setHighlightInjectedFragments(highlightInjectedFragmentsCheckBox.isSelected());
+        state.setThrottleInterval((Integer) throttleIntervalSpinner.getValue());
+        state.setMemoryBudget((Integer) memoryBudgetSpinner.getValue());
+        state.setConsolePolicy((HighlightPolicy) consolePolicyComboBox.getSelectedItem());
+        state.setLogPolicy((HighlightPolicy) logPolicyComboBox.getSelectedItem());
+        state.setDiffPolicy((HighlightPolicy) diffPolicyComboBox.getSelectedItem());
+        state.setViewerPolicy((HighlightPolicy) viewerPolicyComboBox.getSelectedItem());
+        state.setKeywordPairs(getKeywordPairs());
+        state.setDisabledLanguageIds(getDisabledLanguageIds());
+        HighlightBracketPairApplicationComponent.getInstance().refreshAllEditors();
+    }
+
+    @Override
+    public void reset() {
+        HighlightBracketPairPluginState state = getPluginState();
+        maxFileSizeSpinner.setValue(state.getMaxFileSize());
+        debounceDelaySpinner.setValue(state.getDebounceDelay());
+        scanLimitSpinner.setValue(state.getScanLimit());
+        enclosingPairLevelsSpinner.setValue(Math.max(1, state.getEnclosingPairLevels()));
+        rainbowCheckBox.setSelected(state.isHighlightEnclosingPairs());
+        backgroundComputationCheckBox.setSelected(state.isBackgroundComputation());
+        fallbackMaxDistanceSpinner.setValue(state.getFallbackMaxDistance());
+        fallbackQuoteAwareCheckBox.setSelected(state.isFallbackQuoteAware());
+        customRendererCheckBox.setSelected(state.isCustomRenderer());
+        highlightInjectedFragmentsCheckBox.setSelected(state.isHighlightInjectedFragments());
+        throttleIntervalSpinner.setValue(state.getThrottleInterval());
+        memoryBudgetSpinner.setValue(state.getMemoryBudget());
+        consolePolicyComboBox.setSelectedItem(state.getConsolePolicy());
+        logPolicyComboBox.setSelectedItem(state.getLogPolicy());
+        diffPolicyComboBox.setSelectedItem(state.getDiffPolicy());
+        viewerPolicyComboBox.setSelectedItem(state.getViewerPolicy());
+        StringBuilder keywordPairsText = new StringBuilder();
+        for (Map.Entry<String, String> entry : state.getKeywordPairs().entrySet())
+            keywordPairsText.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        keywordPairsTextArea.setText(keywordPairsText.toString());
+        for (Language language : languages) {
+            languageCheckBoxList.setItemSelected(language,
+                    !state.getDisabledLanguageIds().contains(language.getID()));
+        }
+        languageCheckBoxList.repaint();
+    }
+
+    @Override
+    public void disposeUIResources() {
+        languageCheckBoxList = null;
+        languages = null;
+    }
+
+    private Set<String> getDisabledLanguageIds() {
+        Set<String> disabledLanguageIds = new HashSet<>();
+        for (Language language : languages) {
+            if (!languageCheckBoxList.isItemSelected(language))
+                disabledLanguageIds.add(language.getID());
+        }
+        return disabledLanguageIds;
+    }
+
+    private Map<String, String> getKeywordPairs() {
+        Map<String, String> keywordPairs = new LinkedHashMap<>();
+        for (String line : keywordPairsTextArea.getText().split("\n")) {
+            int separator = line.indexOf(':');
+            if (separator <= 0)
+                continue;
+            String languageId = line.substring(0, separator).trim();
+            String groups = line.substring(separator + 1).trim();
+            if (!languageId.isEmpty() && !groups.isEmpty())
+                keywordPairs.put(languageId, groups);
+        }
+        return keywordPairs;
+    }
+
+    private static HighlightBracketPairPluginState getPluginState() {
+        return HighlightBracketPairSettings.getInstance().getState();
+    }
+}
@@ -1,5 +1,11 @@
 package io.github.qeesung.setting;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Highlight bracket pair plugin state to be hold {@link HighlightBracketPairSettings}.
  */
@@ -9,6 +15,102 @@ public class HighlightBracketPairPluginState {
      */
     private String pluginVersion = "";
 
+    /**
+     * Highlight the chain of enclosing pairs around the caret.
+     */
+    private boolean highlightEnclosingPairs = false;
+
+    /**
+     * Max enclosing pair levels to be highlighted.
+     */
+    private int enclosingPairLevels = 3;
+
+    /**
+     * Max file length in chars to be highlighted.
+     */
+    private int maxFileSize = 10 * 1024 * 1024;
+
+    /**
+     * Ids of the languages that should not be highlighted.
+     */
+    private Set<String> disabledLanguageIds = new HashSet<>();
+
+    /**
+     * Delay in milliseconds after the last caret move before highlighting, 0 for no delay.
+     */
+    private int debounceDelay = 0;
+
+    /**
+     * Max tokens to be scanned in one direction, 0 for no limit.
+     */
+    private int scanLimit = 0;
+
+    /**
+     * Find the brace pair in the background thread.
+     */
+    private boolean backgroundComputation = false;
+
+    /**
+     * Max chars to be scanned in one direction by the fallback matcher.
+     */
+    private int fallbackMaxDistance = 100000;
+
+    /**
+     * Ignore the braces in quotes by the fallback matcher.
+     */
+    private boolean fallbackQuoteAware = true;
+
+    /**
+     * Paint the pairs by one custom renderer per editor instead of the range highlighters.
+     */
+    private boolean customRenderer = false;
+
+    /**
+     * Highlight the pairs of the injected language inside the injected fragments.
+     */
+    private boolean highlightInjectedFragments = true;
+
+    /**
+     * Min interval in milliseconds between two highlights of the throttled editors.
+     */
+    private int throttleInterval = 300;
+
+    /**
+     * Max memory in megabytes of the cached matching state of all the editors, 0 for no limit.
+     */
+    private int memoryBudget = 64;
+
+    /**
+     * Highlight policy of the run, debug and terminal consoles.
+     */
+    private HighlightPolicy consolePolicy = HighlightPolicy.OFF;
+
+    /**
+     * Highlight policy of the log file editors.
+     */
+    private HighlightPolicy logPolicy = HighlightPolicy.THROTTLED;
+
+    /**
+     * Highlight policy of the diff viewers.
+     */
+    private HighlightPolicy diffPolicy = HighlightPolicy.FULL;
+
+    /**
+     * Highlight policy of the other read only viewers.
+     */
+    private HighlightPolicy viewerPolicy = HighlightPolicy.FULL;
+
+    /**
+     * Block keyword pair groups of a fresh or an old settings file.
+     */
+    private static final Map<String, String> DEFAULT_KEYWORD_PAIRS =
+            Collections.unmodifiableMap(createDefaultKeywordPairs());
+
+    /**
+     * Block keyword pair groups by the language id, such as {@code if / fi; do / done}.
+     */
+    private Map<String, String> keywordPairs = createDefaultKeywordPairs();
+
     /**
      * Get the Plugin version.
      *
@@ -26,4 +128,335 @@ public class HighlightBracketPairPluginState {
     public void setPluginVersion(String pluginVersion) {
         this.pluginVersion = pluginVersion;
     }
+
+    /**
+     * Get whether the enclosing pairs should be highlighted.
+     *
+     * @return highlight enclosing pairs
+     */
+    public boolean isHighlightEnclosingPairs() {
+        return highlightEnclosingPairs;
+    }
+
+    /**
+     * Set whether the enclosing pairs should be highlighted.
+     *
+     * @param highlightEnclosingPairs highlight enclosing pairs
+     */
+    public void setHighlightEnclosingPairs(boolean highlightEnclosingPairs) {
+        this.highlightEnclosingPairs = highlightEnclosingPairs;
+    }
+
+    /**
+     * Get the max enclosing pair levels.
+     *
+     * @return enclosing pair levels
+     */
+    public int getEnclosingPairLevels() {
+        return enclosingPairLevels;
+    }
+
+    /**
+     * Set the max enclosing pair levels.
+     *
+     * @param enclosingPairLevels enclosing pair levels
+     */
+    public void setEnclosingPairLevels(int enclosingPairLevels) {
+        this.enclosingPairLevels = enclosingPairLevels;
+    }
+
+    /**
+     * Get the max file size.
+     *
+     * @return max file size
+     */
+    public int getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Set the max file size.
+     *
+     * @param maxFileSize max file size
+     */
+    public void setMaxFileSize(int maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Get the disabled language ids.
+     *
+     * @return disabled language ids
+     */
+    public Set<String> getDisabledLanguageIds() {
+        return disabledLanguageIds;
+    }
+
+    /**
+     * Set the disabled language ids.
+     *
+     * @param disabledLanguageIds disabled language ids
+     */
+    public void setDisabledLanguageIds(Set<String> disabledLanguageIds) {
+        this.disabledLanguageIds = disabledLanguageIds;
+    }
+
+    /**
+     * Get the debounce delay.
+     *
+     * @return debounce delay
+     */
+    public int getDebounceDelay() {
+        return debounceDelay;
+    }
+
+    /**
+     * Set the debounce delay.
+     *
+     * @param debounceDelay debounce delay
+     */
+    public void setDebounceDelay(int debounceDelay) {
+        this.debounceDelay = debounceDelay;
+    }
+
+    /**
+     * Get the scan limit.
+     *
+     * @return scan limit
+     */
+    public int getScanLimit() {
+        return scanLimit;
+    }
+
+    /**
+     * Set the scan limit.
+     *
+     * @param scanLimit scan limit
+     */
+    public void setScanLimit(int scanLimit) {
+        this.scanLimit = scanLimit;
+    }
+
+    /**
+     * Get whether the brace pair is found in the background thread.
+     *
+     * @return background computation
+     */
+    public boolean isBackgroundComputation() {
+        return backgroundComputation;
+    }
+
+    /**
+     * Set whether the brace pair is found in the background thread.
+     *
+     * @param backgroundComputation background computation
+     */
+    public void setBackgroundComputation(boolean backgroundComputation) {
+        this.backgroundComputation = backgroundComputation;
+    }
+
+    /**
+     * Get the max distance of the fallback matcher.
+     *
+     * @return fallback max distance
+     */
+    public int getFallbackMaxDistance() {
+        return fallbackMaxDistance;
+    }
+
+    /**
+     * Set the max distance of the fallback matcher.
+     *
+     * @param fallbackMaxDistance fallback max distance
+     */
+    public void setFallbackMaxDistance(int fallbackMaxDistance) {
+        this.fallbackMaxDistance = fallbackMaxDistance;
+    }
+
+    /**
+     * Get whether the fallback matcher is quote aware.
+     *
+     * @return fallback quote aware
+     */
+    public boolean isFallbackQuoteAware() {
+        return fallbackQuoteAware;
+    }
+
+    /**
+     * Set whether the fallback matcher is quote aware.
+     *
+     * @param fallbackQuoteAware fallback quote aware
+     */
+    public void setFallbackQuoteAware(boolean fallbackQuoteAware) {
+        this.fallbackQuoteAware = fallbackQuoteAware;
+    }
+
+    /**
+     * Get whether the pairs are painted by the custom renderer.
+     *
+     * @return custom renderer
+     */
+    public boolean isCustomRenderer() {
+        return customRenderer;
+    }
+
+    /**
+     * Set whether the pairs are painted by the custom renderer.
+     *
+     * @param customRenderer custom renderer
+     */
+    public void setCustomRenderer(boolean customRenderer) {
+        this.customRenderer = customRenderer;
+    }
+
+    /**
+     * Get whether the pairs inside the injected fragments are highlighted.
+     *
+     * @return highlight injected fragments
+     */
+    public boolean isHighlightInjectedFragments() {
+        return highlightInjectedFragments;
+    }
+
+    /**
+     * Set whether the pairs inside the injected fragments are highlighted.
+     *
+     * @param highlightInjectedFragments highlight injected fragments
+     */
+    public void setHighlightInjectedFragments(boolean highlightInjectedFragments) {
+        this.highlightInjectedFragments = highlightInjectedFragments;
+    }
+
+    /**
+     * Get the throttle interval.
+     *
+     * @return throttle interval
+     */
+    public int getThrottleInterval() {
+        return throttleInterval;
+    }
+
+    /**
+     * Set the throttle interval.
+     *
+     * @param throttleInterval throttle interval
+     */
+    public void setThrottleInterval(int throttleInterval) {
+        this.throttleInterval = throttleInterval;
+    }
+
+    /**
+     * Get the memory budget in megabytes.
+     *
+     * @return memory budget
+     */
+    public int getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Set the memory budget in megabytes.
+     *
+     * @param memoryBudget memory budget
+     */
+    public void setMemoryBudget(int memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Get the highlight policy of the run, debug and terminal consoles.
+     *
+     * @return console policy
+     */
+    public HighlightPolicy getConsolePolicy() {
+        return consolePolicy;
+    }
+
+    /**
+     * Set the highlight policy of the run, debug and terminal consoles.
+     *
+     * @param consolePolicy console policy
+     */
+    public void setConsolePolicy(HighlightPolicy consolePolicy) {
+        this.consolePolicy = consolePolicy;
+    }
+
+    /**
+     * Get the highlight policy of the log file editors.
+     *
+     * @return log policy
+     */
+    public HighlightPolicy getLogPolicy() {
+        return logPolicy;
+    }
+
+    /**
+     * Set the highlight policy of the log file editors.
+     *
+     * @param logPolicy log policy
+     */
+    public void setLogPolicy(HighlightPolicy logPolicy) {
+        this.logPolicy = logPolicy;
+    }
+
+    /**
+     * Get the highlight policy of the diff viewers.
+     *
+     * @return diff policy
+     */
+    public HighlightPolicy getDiffPolicy() {
+        return diffPolicy;
+    }
+
+    /**
+     * Set the highlight policy of the diff viewers.
+     *
+     * @param diffPolicy diff policy
+     */
+    public void setDiffPolicy(HighlightPolicy diffPolicy) {
+        this.diffPolicy = diffPolicy;
+    }
+
+    /**
+     * Get the highlight policy of the other read only viewers.
+     *
+     * @return viewer policy
+     */
+    public HighlightPolicy getViewerPolicy() {
+        return viewerPolicy;
+    }
+
+    /**
+     * Set the highlight policy of the other read only viewers.
+     *
+     * @param viewerPolicy viewer policy
+     */
+    public void setViewerPolicy(HighlightPolicy viewerPolicy) {
+        this.viewerPolicy = viewerPolicy;
+    }
+
+    /**
+     * Get the block keyword pair groups by the language id.
+     *
+     * @return keyword pairs, the default pairs if not set
+     */
+    public Map<String, String> getKeywordPairs() {
+        return keywordPairs != null ? keywordPairs : DEFAULT_KEYWORD_PAIRS;
+    }
+
+    /**
+     * Set the block keyword pair groups by the language id.
+     *
+     * @param keywordPairs keyword pairs
+     */
+    public void setKeywordPairs(Map<String, String> keywordPairs) {
+        this.keywordPairs = keywordPairs;
+    }
+
+    private static Map<String, String> createDefaultKeywordPairs() {
+        Map<String, String> keywordPairs = new LinkedHashMap<>();
+        keywordPairs.put("Shell Script", "if / fi; case / esac; do / done");
+        keywordPairs.put("Bash", "if / fi; case / esac; do / done");
+        return keywordPairs;
+    }
 }
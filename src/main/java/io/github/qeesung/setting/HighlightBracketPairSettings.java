@@ -4,8 +4,15 @@ import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
+import com.intellij.lang.Language;
+import io.github.qeesung.brace.KeywordPairs;
+import io.github.qeesung.highlighter.HighlightEditorKind;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Highlight bracket pair settings to save the some configuration
  * that store int the {@link HighlightBracketPairPluginState}.
@@ -19,6 +26,8 @@ import org.jetbrains.annotations.Nullable;
 public class HighlightBracketPairSettings
         implements PersistentStateComponent<HighlightBracketPairPluginState> {
     private HighlightBracketPairPluginState myState = new HighlightBracketPairPluginState();
+    private Map<String, String> parsedKeywordPairsSource;
+    private Map<String, KeywordPairs> parsedKeywordPairs = Collections.emptyMap();
 
     /**
      * Get the settings singleton instance.
@@ -67,4 +76,174 @@ public class HighlightBracketPairSettings
     public void setVersion(String version) {
         myState.setPluginVersion(version);
     }
+
+    /**
+     * Check if the enclosing pairs should be highlighted.
+     *
+     * @return highlight enclosing pairs
+     */
+    public boolean isHighlightEnclosingPairs() {
+        return myState.isHighlightEnclosingPairs();
+    }
+
+    /**
+     * Get the max enclosing pair levels to be highlighted, at least one.
+     *
+     * @return enclosing pair levels
+     */
+    public int getEnclosingPairLevels() {
+        return Math.max(1, myState.getEnclosingPairLevels());
+    }
+
+    /**
+     * Get the max file size to be highlighted.
+     *
+     * @return max file size
+     */
+    public int getMaxFileSize() {
+        return myState.getMaxFileSize();
+    }
+
+    /**
+     * Check if the language should be highlighted.
+     *
+     * @param language language
+     * @return language is enabled
+     */
+    public boolean isLanguageEnabled(Language language) {
+        return !myState.getDisabledLanguageIds().contains(language.getID());
+    }
+
+    /**
+     * Get the debounce delay in milliseconds.
+     *
+     * @return debounce delay
+     */
+    public int getDebounceDelay() {
+        return Math.max(0, myState.getDebounceDelay());
+    }
+
+    /**
+     * Get the max tokens to be scanned in one direction.
+     *
+     * @return scan limit, {@link Integer#MAX_VALUE} for no limit
+     */
+    public int getScanLimit() {
+        int scanLimit = myState.getScanLimit();
+        return scanLimit <= 0 ? Integer.MAX_VALUE : scanLimit;
+    }
+
+    /**
+     * Check if the brace pair should be found in the background thread.
+     *
+     * @return background computation
+     */
+    public boolean isBackgroundComputation() {
+        return myState.isBackgroundComputation();
+    }
+
+    /**
+     * Get the max chars to be scanned in one direction by the fallback matcher.
+     *
+     * @return fallback max distance
+     */
+    public int getFallbackMaxDistance() {
+        return Math.max(0, myState.getFallbackMaxDistance());
+    }
+
+    /**
+     * Check if the fallback matcher ignores the braces in quotes.
+     *
+     * @return fallback quote aware
+     */
+    public boolean isFallbackQuoteAware() {
+        return myState.isFallbackQuoteAware();
+    }
+
+    /**
+     * Check if the pairs are painted by the custom renderer.
+     *
+     * @return custom renderer
+     */
+    public boolean isCustomRenderer() {
+        return myState.isCustomRenderer();
+    }
+
+    /**
+     * Check if the pairs inside the injected fragments should be highlighted.
+     *
+     * @return highlight injected fragments
+     */
+    public boolean isHighlightInjectedFragments() {
+        return myState.isHighlightInjectedFragments();
+    }
+
+    /**
+     * Get the min interval in milliseconds between two highlights of the throttled editors.
+     *
+     * @return throttle interval
+     */
+    public int getThrottleInterval() {
+        return Math.max(0, myState.getThrottleInterval());
+    }
+
+    /**
+     * Get the max bytes of the cached matching state of all the editors.
+     *
+     * @return memory budget in bytes, 0 for no limit
+     */
+    public long getMemoryBudgetBytes() {
+        return Math.max(0, myState.getMemoryBudget()) * 1024L * 1024L;
+    }
+
+    /**
+     * Get the highlight policy of the editor kind.
+     *
+     * @param editorKind editor kind
+     * @return highlight policy
+     */
+    public HighlightPolicy getHighlightPolicy(HighlightEditorKind editorKind) {
+        HighlightPolicy policy;
+        switch (editorKind) {
+            case CONSOLE:
+                policy = myState.getConsolePolicy();
+                break;
+            case LOG:
+                policy = myState.getLogPolicy();
+                break;
+            case DIFF:
+                policy = myState.getDiffPolicy();
+                break;
+            case VIEWER:
+                policy = myState.getViewerPolicy();
+                break;
+            default:
+                policy = HighlightPolicy.FULL;
+        }
+        return policy == null ? HighlightPolicy.FULL : policy;
+    }
+
+    /**
+     * Get the block keyword pairs of the language, parsed once per settings change.
+     *
+     * @param language language
+     * @return keyword pairs, {@link KeywordPairs#EMPTY} if not configured
+     */
+    public KeywordPairs getKeywordPairs(Language language) {
+        Map<String, KeywordPairs> keywordPairs;
+        synchronized (this) {
+            Map<String, String> source = myState.getKeywordPairs();
+            if (source != parsedKeywordPairsSource) {
+                parsedKeywordPairs = new HashMap<>();
+                if (source != null) {
+                    for (Map.Entry<String, String> entry : source.entrySet())
+                        parsedKeywordPairs.put(entry.getKey(), KeywordPairs.parse(entry.getValue()));
+                }
+                parsedKeywordPairsSource = source;
+            }
+            keywordPairs = parsedKeywordPairs;
+        }
+        KeywordPairs languageKeywordPairs = keywordPairs.get(language.getID());
+        return languageKeywordPairs == null ? KeywordPairs.EMPTY : languageKeywordPairs;
+    }
 }
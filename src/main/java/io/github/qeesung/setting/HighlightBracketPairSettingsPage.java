@@ -31,6 +31,12 @@ public class HighlightBracketPairSettingsPage implements ColorSettingsPage {
             TextAttributesKey.createTextAttributesKey("DOUBLE_QUOTE_ATTR");
     public static final TextAttributesKey CUSP_BRACKETS_ATTR =
             TextAttributesKey.createTextAttributesKey("CUSP_BRACKETS_ATTR");
+    // the block keywords look like the braces until colored on their own
+    public static final TextAttributesKey KEYWORD_PAIR_ATTR =
+            TextAttributesKey.createTextAttributesKey("KEYWORD_PAIR_ATTR", BRACE_ATTR);
+    // the other pairs of the language brace matchers are not colored by default
+    public static final TextAttributesKey OTHER_PAIR_ATTR =
+            TextAttributesKey.createTextAttributesKey("OTHER_PAIR_ATTR");
 
     private static final Map<String, TextAttributesKey> TAGS = new HashMap<>();
     private static final AttributesDescriptor[] ATTRIBUTESDESC = {
@@ -39,6 +45,8 @@ public class HighlightBracketPairSettingsPage implements ColorSettingsPage {
             new AttributesDescriptor("Parenthesis", PARENTHESIS_ATTR),
             new AttributesDescriptor("DoubleQuote", DOUBLE_QUOTE_ATTR),
             new AttributesDescriptor("CuspBracket", CUSP_BRACKETS_ATTR),
+            new AttributesDescriptor("KeywordPair", KEYWORD_PAIR_ATTR),
+            new AttributesDescriptor("OtherPair", OTHER_PAIR_ATTR),
     };
     private static final Map<IElementType, TextAttributesKey> ELETYPE2ATTR = new HashMap<>();
     private static final Map<String, TextAttributesKey> CONTENT2ATTR = new HashMap<>();
@@ -62,6 +70,8 @@ public class HighlightBracketPairSettingsPage implements ColorSettingsPage {
         TAGS.put("Parenthesis", PARENTHESIS_ATTR);
         TAGS.put("DoubleQuote", DOUBLE_QUOTE_ATTR);
         TAGS.put("CuspBracket", CUSP_BRACKETS_ATTR);
+        TAGS.put("KeywordPair", KEYWORD_PAIR_ATTR);
+        TAGS.put("OtherPair", OTHER_PAIR_ATTR);
     }
 
     public static TextAttributesKey getTextAttributesKeyByToken(IElementType type) {
@@ -91,7 +101,9 @@ public class HighlightBracketPairSettingsPage implements ColorSettingsPage {
                 " <Parenthesis>(</Parenthesis>...<Parenthesis>)</Parenthesis>" +
                 " <Bracket>[</Bracket>...<Bracket>]</Bracket>" +
                 " <CuspBracket><</CuspBracket>...<CuspBracket>></CuspBracket>" +
-                " <DoubleQuote>\"</DoubleQuote>...<DoubleQuote>\"</DoubleQuote>";
+                " <DoubleQuote>\"</DoubleQuote>...<DoubleQuote>\"</DoubleQuote>" +
+                " <KeywordPair>if</KeywordPair>...<KeywordPair>fi</KeywordPair>" +
+                " <OtherPair>begin</OtherPair>...<OtherPair>end</OtherPair>";
     }
 
     @Nullable
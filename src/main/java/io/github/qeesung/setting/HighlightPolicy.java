@@ -0,0 +1,32 @@
+package io.github.qeesung.setting;
+
+/**
+ * Highlight policy of one kind of editors.
+ */
+public enum HighlightPolicy {
+    /**
+     * Highlight on every caret move.
+     */
+    FULL("Highlight on every caret move"),
+
+    /**
+     * Highlight at most once per throttle interval.
+     */
+    THROTTLED("Highlight at most once per throttle interval"),
+
+    /**
+     * Do not highlight.
+     */
+    OFF("Do not highlight");
+
+    private final String description;
+
+    HighlightPolicy(String description) {
+        this.description = description;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.qeesung.util;
+
+/**
+ * Cached state that estimates its retained memory, so the caches of all the
+ * editors can be kept under one memory budget.
+ */
+public interface MemoryEstimate {
+    int OBJECT_HEADER_BYTES = 16;
+    int REFERENCE_BYTES = 8;
+
+    /**
+     * Estimate the retained bytes, the estimate counts the arrays and the entries
+     * held by the state, not the shared objects such as the element types.
+     *
+     * @return estimated bytes
+     */
+    long estimateBytes();
+}
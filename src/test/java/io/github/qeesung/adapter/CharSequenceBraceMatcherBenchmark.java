@@ -0,0 +1,60 @@
+package io.github.qeesung.adapter;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Throughput benchmark of the character level brace matcher on a synthetic log
+ * buffer, the caret is at the top level in the middle of the buffer and both
+ * walks scan to the buffer ends.
+ * <p>
+ * Usage: {@code CharSequenceBraceMatcherBenchmark [buffer MB] [rounds]}
+ */
+public class CharSequenceBraceMatcherBenchmark {
+    private static final String[] WORDS = {
+            "INFO", "WARN", "request", "id=42", "user's", "map{a=1, b=[2, 3]}", "call(x, y)",
+            "\"quoted (text)\"", "'(it)'", "done"
+    };
+
+    /**
+     * Benchmark should not be instantiated.
+     */
+    private CharSequenceBraceMatcherBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String text = createLog(megabytes * 1024 * 1024);
+        int caret = text.indexOf('\n', text.length() / 2) + 1;
+
+        for (boolean quoteAware : new boolean[]{false, true}) {
+            CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(Integer.MAX_VALUE, quoteAware);
+            // the first round warms up
+            for (int round = 0; round <= rounds; round++) {
+                long start = System.nanoTime();
+                matcher.findLeftLParen(text, caret, false);
+                long scanned = matcher.getLastScannedChars();
+                matcher.findRightRParen(text, caret, false);
+                scanned += matcher.getLastScannedChars();
+                long nanos = System.nanoTime() - start;
+                if (round > 0) {
+                    System.out.println(String.format(Locale.ROOT, "quote aware %b: %d chars, %.1f ms, %.1f Mchars/s",
+                            quoteAware, scanned, nanos / 1e6, scanned * 1000.0 / nanos));
+                }
+            }
+        }
+    }
+
+    private static String createLog(int length) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(length + 128);
+        while (text.length() < length) {
+            int words = 4 + random.nextInt(12);
+            for (int i = 0; i < words; i++)
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.qeesung.adapter;
+
+import io.github.qeesung.brace.KeywordPairs;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the character level brace matcher.
+ */
+public class CharSequenceBraceMatcherTest {
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void findsTheClosestPair() {
+        CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(Integer.MAX_VALUE, false);
+        String text = "a(b[c]d)e";
+        assertEquals(3, matcher.findLeftLParen(text, 4, false));
+        assertEquals(5, matcher.findRightRParen(text, 4, false));
+        assertEquals(1, matcher.findLeftLParen(text, 6, false));
+        assertEquals(7, matcher.findRightRParen(text, 6, false));
+        assertEquals(CharSequenceBraceMatcher.NON_OFFSET, matcher.findLeftLParen(text, 8, false));
+    }
+
+    @Test
+    public void findsTheEnclosingLevels() {
+        CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(Integer.MAX_VALUE, false);
+        String text = "{a(b[c]d)e}";
+        int[] levels = new int[4];
+        assertEquals(3, matcher.findLeftLParens(text, 5, false, levels));
+        assertArrayEquals(new int[]{4, 2, 0}, Arrays.copyOf(levels, 3));
+        assertEquals(3, matcher.findRightRParens(text, 5, false, levels));
+        assertArrayEquals(new int[]{6, 8, 10}, Arrays.copyOf(levels, 3));
+    }
+
+    @Test
+    public void matchesTheKeywordsAsWholeWords() {
+        KeywordPairs keywordPairs = KeywordPairs.parse("if / fi; do / done");
+        CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(Integer.MAX_VALUE, true, keywordPairs);
+        String text = "if x; then\n  do (y) \"fi\" done_x done\nfi";
+        int[] levels = new int[4];
+        int caret = text.indexOf('y');
+        assertEquals(3, matcher.findLeftLParens(text, caret, false, levels));
+        assertArrayEquals(new int[]{text.indexOf('('), text.indexOf("do"), 0}, Arrays.copyOf(levels, 3));
+        assertEquals(3, matcher.findRightRParens(text, caret, false, levels));
+        assertArrayEquals(new int[]{text.indexOf(')'), text.lastIndexOf("done"), text.lastIndexOf("fi")},
+                Arrays.copyOf(levels, 3));
+        assertEquals(CharSequenceBraceMatcher.KEYWORD_BRACE, matcher.braceAt(text, 0));
+        assertEquals("done", matcher.getBraceText(matcher.braceAt(text, text.lastIndexOf("done"))));
+        assertEquals(-1, matcher.braceAt(text, text.indexOf("done_x")));
+    }
+
+    @Test
+    public void pairsTheKeywordsByTheKeyword() {
+        KeywordPairs keywordPairs = KeywordPairs.parse("if / fi; do / done");
+        CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(Integer.MAX_VALUE, false, keywordPairs);
+        String text = "if a do b fi";
+        int ifBrace = matcher.braceAt(text, 0);
+        int doBrace = matcher.braceAt(text, 5);
+        int fiBrace = matcher.braceAt(text, 10);
+        assertTrue(matcher.isLeftBrace(ifBrace));
+        assertFalse(matcher.isLeftBrace(fiBrace));
+        assertTrue(matcher.isPair(ifBrace, fiBrace));
+        assertFalse(matcher.isPair(doBrace, fiBrace));
+        assertFalse(matcher.isPair(CharSequenceBraceMatcher.braceIndex('('), fiBrace));
+        // the unmatched do stops the walk
+        assertEquals(CharSequenceBraceMatcher.NON_OFFSET, matcher.findLeftLParen(text, 11, true));
+    }
+
+    @Test
+    public void ignoresTheBracesInQuotes() {
+        CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(Integer.MAX_VALUE, true);
+        String text = "(a \")\" it's b)";
+        assertEquals(0, matcher.findLeftLParen(text, 2, false));
+        assertEquals(text.length() - 1, matcher.findRightRParen(text, 2, false));
+    }
+
+    @Test
+    public void carriesTheQuoteOverTheChunks() {
+        CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(Integer.MAX_VALUE, true);
+        // the escape is the last char of the first chunk, the escaped quote the first of the next
+        String text = "(\"" + repeat(')', 4093) + "\\\")\")";
+        assertEquals(4095, text.indexOf('\\'));
+        assertEquals(text.length() - 1, matcher.findRightRParen(text, 1, false));
+        assertEquals(0, matcher.findLeftLParen(text, text.length() - 1, false));
+    }
+
+    @Test
+    public void readsLongLinesInChunks() {
+        CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(Integer.MAX_VALUE, true) {
+            @Override
+            protected void getChars(CharSequence text, int start, int end, char[] buffer) {
+                assertTrue(end - start <= 4096);
+                super.getChars(text, start, end, buffer);
+            }
+        };
+        String text = "(" + repeat('x', 20000) + ")";
+        assertEquals(0, matcher.findLeftLParen(text, 10000, false));
+        assertEquals(text.length() - 1, matcher.findRightRParen(text, 10000, false));
+    }
+
+    @Test
+    public void stopsAtTheMaxDistanceInLongLines() {
+        String text = "(" + repeat('x', 100000) + ")";
+        for (boolean quoteAware : new boolean[]{false, true}) {
+            CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(100, quoteAware);
+            assertEquals(CharSequenceBraceMatcher.NON_OFFSET, matcher.findLeftLParen(text, 50000, false));
+            assertTrue(matcher.getLastScannedChars() <= 101);
+            assertEquals(CharSequenceBraceMatcher.NON_OFFSET, matcher.findRightRParen(text, 50000, false));
+            assertTrue(matcher.getLastScannedChars() <= 2 * 100 + 1);
+        }
+    }
+
+    @Test
+    public void findsTheQuotePair() {
+        CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(Integer.MAX_VALUE, true);
+        int[] quotes = new int[2];
+        assertTrue(matcher.findQuotePair("a \"b(c\" d", 4, false, quotes));
+        assertArrayEquals(new int[]{2, 6}, quotes);
+    }
+
+    @Test
+    public void reusesTheMatcherAcrossTexts() {
+        KeywordPairs keywordPairs = KeywordPairs.parse("do / done");
+        CharSequenceBraceMatcher reused = new CharSequenceBraceMatcher(100000, true, keywordPairs);
+        assertTrue(reused.hasSettings(100000, true, keywordPairs));
+        assertFalse(reused.hasSettings(100000, false, keywordPairs));
+        assertFalse(reused.hasSettings(100000, true, KeywordPairs.parse("do / done")));
+        String[] texts = {"{" + repeat('(', 300) + "x" + repeat(')', 300) + "}", "do \"(\" [a] done", "a(b\nc)d"};
+        int[] reusedLevels = new int[4];
+        int[] levels = new int[4];
+        for (int round = 0; round < 2; round++) {
+            for (String text : texts) {
+                int caret = text.length() / 2;
+                CharSequenceBraceMatcher fresh = new CharSequenceBraceMatcher(100000, true, keywordPairs);
+                int count = fresh.findLeftLParens(text, caret, false, levels);
+                assertEquals(count, reused.findLeftLParens(text, caret, false, reusedLevels));
+                assertArrayEquals(Arrays.copyOf(levels, count), Arrays.copyOf(reusedLevels, count));
+                count = fresh.findRightRParens(text, caret, true, levels);
+                assertEquals(count, reused.findRightRParens(text, caret, true, reusedLevels));
+                assertArrayEquals(Arrays.copyOf(levels, count), Arrays.copyOf(reusedLevels, count));
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.qeesung.brace;
+
+import com.intellij.lang.Language;
+import com.intellij.psi.tree.IElementType;
+import io.github.qeesung.core.BraceTokens;
+import io.github.qeesung.core.BraceTokensBuilder;
+import io.github.qeesung.core.TokenStream;
+import io.github.qeesung.core.batch.CLikeTokenStream;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Allocation budget of the snapshot walks run on every caret move, measured by
+ * the allocated bytes of the test thread. The walks should not allocate once the
+ * per-thread scratch stack is grown, the slack only covers the measurement.
+ */
+public class BraceTokenSnapshotAllocationTest {
+    private static final int WARMUP_MOVES = 5000;
+    private static final int MEASURED_MOVES = 2000;
+    private static final long MEASUREMENT_SLACK_BYTES = 1024;
+    private static final int NESTING = 200;
+
+    private static final Map<Character, IElementType> TYPES = new HashMap<>();
+    private static com.sun.management.ThreadMXBean threadBean;
+    private static BraceTokenSnapshot snapshot;
+    private static int samePairOffset;
+    private static int nestedPairOffset;
+    private static int stringOffset;
+    private static int noPairOffset;
+
+    private final int[] leftLevels = new int[8];
+    private final int[] rightLevels = new int[8];
+    private long sink;
+
+    @BeforeClass
+    public static void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        for (char c : "()[]{}\"".toCharArray())
+            TYPES.put(c, new IElementType("BRACE " + c, Language.ANY));
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++)
+            text.append("f(a[b]{c}) ");
+        noPairOffset = text.length() - 1;
+        text.append("g(");
+        samePairOffset = text.length();
+        text.append("h) {");
+        for (int i = 0; i < NESTING; i++)
+            text.append('(');
+        for (int i = 0; i < NESTING; i++)
+            text.append(')');
+        nestedPairOffset = text.length();
+        text.append("x} (\"s(t");
+        stringOffset = text.length();
+        text.append("u\") ");
+        for (int i = 0; i < 500; i++)
+            text.append("f(a[b]{c}) ");
+
+        snapshot = new BraceTokenSnapshot(BraceTokensBuilder.build(new TypedTokenStream(text), text.length(),
+                (left, right) -> CLikeTokenStream.isPair(typeChar(left), typeChar(right)), 0));
+    }
+
+    @Test
+    public void samePairDoesNotAllocate() {
+        assertPair(samePairOffset, "(", ")");
+        assertMovesWithinBudget(samePairOffset);
+    }
+
+    @Test
+    public void nestedPairDoesNotAllocate() {
+        assertPair(nestedPairOffset, "{", "}");
+        assertMovesWithinBudget(nestedPairOffset);
+    }
+
+    @Test
+    public void stringLiteralDoesNotAllocate() {
+        assertEquals(BraceTokens.STRING, snapshot.getKind(snapshot.findTokenAt(stringOffset)));
+        assertPair(stringOffset, "(", ")");
+        assertMovesWithinBudget(stringOffset);
+    }
+
+    @Test
+    public void noPairDoesNotAllocate() {
+        assertEquals(BraceTokens.NON_INDEX, snapshot.findLeftLParen(noPairOffset, false, Integer.MAX_VALUE));
+        assertMovesWithinBudget(noPairOffset);
+    }
+
+    private static void assertPair(int offset, String left, String right) {
+        int leftIndex = snapshot.findLeftLParen(offset, false, Integer.MAX_VALUE);
+        int rightIndex = snapshot.findRightRParen(offset, false, Integer.MAX_VALUE);
+        assertTrue(leftIndex != BraceTokens.NON_INDEX && rightIndex != BraceTokens.NON_INDEX);
+        assertEquals("BRACE " + left, snapshot.getElementType(leftIndex).toString());
+        assertEquals("BRACE " + right, snapshot.getElementType(rightIndex).toString());
+        assertTrue(snapshot.isPairBraces(leftIndex, rightIndex));
+    }
+
+    private void assertMovesWithinBudget(int offset) {
+        moveCaret(offset, WARMUP_MOVES);
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        moveCaret(offset, MEASURED_MOVES);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("allocated " + allocated + " bytes in " + MEASURED_MOVES + " caret moves",
+                allocated <= MEASUREMENT_SLACK_BYTES);
+    }
+
+    /**
+     * Run the queries of one caret move, the token lookup, the pair walks and the
+     * enclosing levels walks, alternating the caret by one char.
+     */
+    private void moveCaret(int offset, int moves) {
+        for (int i = 0; i < moves; i++) {
+            int caret = offset + (i & 1);
+            sink += snapshot.findTokenAt(caret);
+            sink += snapshot.findLeftLParen(caret, false, Integer.MAX_VALUE);
+            sink += snapshot.findRightRParen(caret, false, Integer.MAX_VALUE);
+            sink += snapshot.findLeftLParens(caret, false, Integer.MAX_VALUE, leftLevels);
+            sink += snapshot.findRightRParens(caret, false, Integer.MAX_VALUE, rightLevels);
+        }
+    }
+
+    private static char typeChar(IElementType type) {
+        return type.toString().charAt(type.toString().length() - 1);
+    }
+
+    /**
+     * C like token stream typed by the brace element types.
+     */
+    private static class TypedTokenStream implements TokenStream<IElementType> {
+        private final CLikeTokenStream stream;
+
+        private TypedTokenStream(CharSequence text) {
+            stream = new CLikeTokenStream(text);
+        }
+
+        @Override
+        public boolean atEnd() {
+            return stream.atEnd();
+        }
+
+        @Override
+        public void advance() {
+            stream.advance();
+        }
+
+        @Override
+        public int getStart() {
+            return stream.getStart();
+        }
+
+        @Override
+        public int getEnd() {
+            return stream.getEnd();
+        }
+
+        @Override
+        public byte getKind() {
+            return stream.getKind();
+        }
+
+        @Override
+        public IElementType getType() {
+            return TYPES.get(stream.getType());
+        }
+    }
+}
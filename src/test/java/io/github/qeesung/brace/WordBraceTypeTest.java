@@ -0,0 +1,66 @@
+package io.github.qeesung.brace;
+
+import com.intellij.lang.BracePair;
+import com.intellij.lang.Language;
+import com.intellij.lang.PairedBraceMatcher;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.tree.IElementType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the brace types made of the identifier chars, the edits of the identifier
+ * chars are not structure safe in the languages with such braces.
+ */
+public class WordBraceTypeTest {
+    private static final Language LANGUAGE = Language.ANY;
+
+    @Test
+    public void findsTheKeywordBracesOfTheMatcher() {
+        PairedBraceMatcher matcher = new TestBraceMatcher(
+                new BracePair(new IElementType("(", LANGUAGE), new IElementType(")", LANGUAGE), false),
+                new BracePair(new IElementType("begin", LANGUAGE), new IElementType("end", LANGUAGE), true),
+                new BracePair(new IElementType("kDO", LANGUAGE), new IElementType("kEND", LANGUAGE), true));
+        BracePair[] pairs = matcher.getPairs();
+        assertFalse(BraceTokenTypes.isWordBraceType(pairs[0].getLeftBraceType()));
+        assertFalse(BraceTokenTypes.isWordBraceType(pairs[0].getRightBraceType()));
+        for (int i = 1; i < pairs.length; i++) {
+            assertTrue(BraceTokenTypes.isWordBraceType(pairs[i].getLeftBraceType()));
+            assertTrue(BraceTokenTypes.isWordBraceType(pairs[i].getRightBraceType()));
+        }
+    }
+
+    @Test
+    public void skipsThePunctuationBraces() {
+        assertFalse(BraceTokenTypes.isWordBraceType(new IElementType("LPARENTH", LANGUAGE)));
+        assertFalse(BraceTokenTypes.isWordBraceType(new IElementType("XML_START_TAG_START", LANGUAGE)));
+        assertFalse(BraceTokenTypes.isWordBraceType(new IElementType("{", LANGUAGE)));
+        assertFalse(BraceTokenTypes.isWordBraceType(new IElementType("<%", LANGUAGE)));
+        assertFalse(BraceTokenTypes.isWordBraceType(BraceTokenTypes.PLAIN_LPARENTH));
+    }
+
+    private static class TestBraceMatcher implements PairedBraceMatcher {
+        private final BracePair[] pairs;
+
+        private TestBraceMatcher(BracePair... pairs) {
+            this.pairs = pairs;
+        }
+
+        @Override
+        public BracePair[] getPairs() {
+            return pairs;
+        }
+
+        @Override
+        public boolean isPairedBracesAllowedBeforeType(IElementType lbraceType, IElementType contextType) {
+            return true;
+        }
+
+        @Override
+        public int getCodeConstructStart(PsiFile file, int openingBraceOffset) {
+            return openingBraceOffset;
+        }
+    }
+}
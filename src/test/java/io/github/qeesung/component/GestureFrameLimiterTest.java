@@ -0,0 +1,70 @@
+package io.github.qeesung.component;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static io.github.qeesung.component.GestureFrameReplayBenchmark.Event;
+import static io.github.qeesung.component.GestureFrameReplayBenchmark.Result;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the frame limiter replaying the gesture traces.
+ */
+public class GestureFrameLimiterTest {
+    @Test
+    public void highlightsTheBundledTraceAtMostOncePerFrame() throws IOException {
+        List<Event> trace = GestureFrameReplayBenchmark.readBundledTrace();
+        CharSequence text = GestureFrameReplayBenchmark.createSource(
+                GestureFrameReplayBenchmark.getMaxOffset(trace) + 1);
+        Result baseline = GestureFrameReplayBenchmark.replay(trace, text, false);
+        Result frameCap = GestureFrameReplayBenchmark.replay(trace, text, true);
+        String report = String.format(Locale.ROOT,
+                "%d moves: baseline %d updates %.2f ms, frame cap %d updates %.2f ms",
+                baseline.moves, baseline.updates, baseline.nanos / 1e6, frameCap.updates, frameCap.nanos / 1e6);
+        assertEquals(report, baseline.moves, baseline.updates);
+        assertTrue(report, frameCap.updates < baseline.updates);
+        assertEquals(report, 0, frameCap.framesExceeded);
+        assertEquals(report, 0, frameCap.staleAfterFrame);
+        assertEquals(report, 0, frameCap.staleAtRelease);
+        assertTrue(report, frameCap.isFinalPositionApplied());
+    }
+
+    @Test
+    public void appliesTheFinalPositionWhenTheDragEnds() {
+        // three moves within one frame, the release comes before the pending frame
+        List<Event> trace = Arrays.asList(
+                new Event(100, Event.DRAG, 0), new Event(100, Event.MOVE, 10),
+                new Event(104, Event.DRAG, 0), new Event(104, Event.MOVE, 20),
+                new Event(108, Event.DRAG, 0), new Event(108, Event.MOVE, 30),
+                new Event(110, Event.RELEASE, 0));
+        Result result = GestureFrameReplayBenchmark.replay(trace, "{(a)}" + new String(new char[40]), true);
+        assertEquals(2, result.updates);
+        assertEquals(0, result.staleAtRelease);
+        assertEquals(30, result.highlightedOffset);
+    }
+
+    @Test
+    public void appliesTheFinalPositionWhenTheScrollEnds() {
+        List<Event> trace = Arrays.asList(
+                new Event(100, Event.SCROLL, 0), new Event(100, Event.MOVE, 10),
+                new Event(105, Event.SCROLL, 0), new Event(105, Event.MOVE, 20),
+                new Event(400, Event.MOVE, 25));
+        GestureFrameLimiter frameLimiter = new GestureFrameLimiter(16, 100);
+        frameLimiter.scrolled(100);
+        assertEquals(GestureFrameLimiter.HIGHLIGHT_NOW, frameLimiter.move(100, false));
+        assertEquals(11, frameLimiter.move(105, false));
+        assertEquals(GestureFrameLimiter.COALESCED, frameLimiter.move(110, true));
+        assertEquals(1, frameLimiter.frame(116));
+        assertTrue(!frameLimiter.isActive(300));
+
+        Result result = GestureFrameReplayBenchmark.replay(trace, "{(a)}" + new String(new char[40]), true);
+        assertEquals(3, result.updates);
+        assertEquals(0, result.staleAfterFrame);
+        assertEquals(25, result.highlightedOffset);
+    }
+}
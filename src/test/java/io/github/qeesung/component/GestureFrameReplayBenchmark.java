@@ -0,0 +1,250 @@
+package io.github.qeesung.component;
+
+import io.github.qeesung.adapter.CharSequenceBraceMatcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replay of a caret, mouse drag and visible area event trace, highlighting every
+ * caret move as the baseline, and highlighting at most once per frame during the
+ * gestures as the editor component does. The highlight finds the closest pair of
+ * the caret in a synthetic source, and the pending frame fires on the trace clock.
+ * <p>
+ * Usage: {@code GestureFrameReplayBenchmark [trace file] [rounds]}, the bundled
+ * trace is replayed if no file is given.
+ */
+public class GestureFrameReplayBenchmark {
+    static final String BUNDLED_TRACE = "gesture-trace.txt";
+    static final int FRAME_INTERVAL = 16;
+    static final int SCROLL_GESTURE_TIMEOUT = 100;
+
+    /**
+     * Benchmark should not be instantiated.
+     */
+    private GestureFrameReplayBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Event> trace = args.length > 0 ?
+                readTrace(Files.newInputStream(Paths.get(args[0]))) : readBundledTrace();
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        CharSequence text = createSource(getMaxOffset(trace) + 1);
+        // the first round warms up
+        for (int round = 0; round <= rounds; round++) {
+            Result baseline = replay(trace, text, false);
+            Result frameCap = replay(trace, text, true);
+            if (round > 0) {
+                System.out.println(String.format(Locale.ROOT,
+                        "%d moves: baseline %d updates %.2f ms, frame cap %d updates %.2f ms, " +
+                                "frames exceeded %d, stale after a frame %d, stale at release %d, " +
+                                "final position applied %b",
+                        baseline.moves, baseline.updates, baseline.nanos / 1e6, frameCap.updates,
+                        frameCap.nanos / 1e6, frameCap.framesExceeded, frameCap.staleAfterFrame,
+                        frameCap.staleAtRelease, frameCap.isFinalPositionApplied()));
+            }
+        }
+    }
+
+    /**
+     * Replay the trace.
+     *
+     * @param trace events ordered by time
+     * @param text text the caret offsets are in
+     * @param frameCap highlight at most once per frame during the gestures
+     * @return replay result
+     */
+    static Result replay(List<Event> trace, CharSequence text, boolean frameCap) {
+        CharSequenceBraceMatcher matcher = new CharSequenceBraceMatcher(Integer.MAX_VALUE, true);
+        GestureFrameLimiter frameLimiter = new GestureFrameLimiter(FRAME_INTERVAL, SCROLL_GESTURE_TIMEOUT);
+        Result result = new Result();
+        long frameDue = -1;
+        long lastMoveTime = Long.MIN_VALUE / 2;
+        for (Event event : trace) {
+            if (frameDue >= 0 && frameDue <= event.time) {
+                frameLimiter.frame(frameDue);
+                result.highlightFrame(matcher, text, frameDue);
+                frameDue = -1;
+            }
+            // the pending frame of the last move has fired by now
+            if (event.time - lastMoveTime >= FRAME_INTERVAL && result.highlightedOffset != result.caretOffset)
+                result.staleAfterFrame++;
+
+            switch (event.kind) {
+                case Event.DRAG:
+                    frameLimiter.dragged();
+                    break;
+                case Event.SCROLL:
+                    frameLimiter.scrolled(event.time);
+                    break;
+                case Event.RELEASE:
+                    // the final position is applied at once instead of the pending frame
+                    if (frameLimiter.released() && frameCap) {
+                        frameDue = -1;
+                        result.highlight(matcher, text);
+                    }
+                    if (result.highlightedOffset != result.caretOffset)
+                        result.staleAtRelease++;
+                    break;
+                default:
+                    result.moves++;
+                    result.caretOffset = event.offset;
+                    lastMoveTime = event.time;
+                    if (!frameCap || !frameLimiter.isActive(event.time)) {
+                        frameDue = -1;
+                        result.highlight(matcher, text);
+                        break;
+                    }
+                    int wait = frameLimiter.move(event.time, frameDue >= 0);
+                    if (wait == GestureFrameLimiter.HIGHLIGHT_NOW)
+                        result.highlightFrame(matcher, text, event.time);
+                    else if (wait != GestureFrameLimiter.COALESCED)
+                        frameDue = event.time + wait;
+            }
+        }
+        if (frameDue >= 0) {
+            frameLimiter.frame(frameDue);
+            result.highlightFrame(matcher, text, frameDue);
+        }
+        return result;
+    }
+
+    static List<Event> readBundledTrace() throws IOException {
+        return readTrace(GestureFrameReplayBenchmark.class.getResourceAsStream(BUNDLED_TRACE));
+    }
+
+    /**
+     * Read the trace, one event per line: {@code <time ms> drag | scroll | release | move <offset>},
+     * the lines starting with {@code #} are comments.
+     */
+    static List<Event> readTrace(InputStream input) throws IOException {
+        List<Event> trace = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] fields = line.split("\\s+");
+                long time = Long.parseLong(fields[0]);
+                switch (fields[1]) {
+                    case "drag":
+                        trace.add(new Event(time, Event.DRAG, 0));
+                        break;
+                    case "scroll":
+                        trace.add(new Event(time, Event.SCROLL, 0));
+                        break;
+                    case "release":
+                        trace.add(new Event(time, Event.RELEASE, 0));
+                        break;
+                    case "move":
+                        trace.add(new Event(time, Event.MOVE, Integer.parseInt(fields[2])));
+                        break;
+                    default:
+                        throw new IOException("unknown event: " + line);
+                }
+            }
+        }
+        return trace;
+    }
+
+    static int getMaxOffset(List<Event> trace) {
+        int maxOffset = 0;
+        for (Event event : trace)
+            maxOffset = Math.max(maxOffset, event.offset);
+        return maxOffset;
+    }
+
+    /**
+     * Create a source of nested blocks at least as long as the length.
+     */
+    static CharSequence createSource(int length) {
+        StringBuilder text = new StringBuilder(length + 256);
+        int method = 0;
+        while (text.length() < length) {
+            text.append("class C").append(method).append(" {\n");
+            for (int i = 0; i < 20; i++, method++) {
+                text.append("    void m").append(method).append("(int a, String b) {\n")
+                        .append("        if (a > 0) {\n")
+                        .append("            call(b, \"text (not a brace\", new int[]{a, a + 1});\n")
+                        .append("        }\n")
+                        .append("    }\n");
+            }
+            text.append("}\n");
+        }
+        return text;
+    }
+
+    /**
+     * Event of the trace.
+     */
+    static class Event {
+        static final int MOVE = 0;
+        static final int DRAG = 1;
+        static final int SCROLL = 2;
+        static final int RELEASE = 3;
+
+        final long time;
+        final int kind;
+        final int offset;
+
+        Event(long time, int kind, int offset) {
+            this.time = time;
+            this.kind = kind;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Result of the replay.
+     */
+    static class Result {
+        int moves;
+        int updates;
+        long nanos;
+        /**
+         * Count of the events seen a frame after the last caret move while the
+         * highlight is still at an older caret.
+         */
+        int staleAfterFrame;
+        /**
+         * Count of the mouse releases after which the highlight is not at the caret.
+         */
+        int staleAtRelease;
+        /**
+         * Count of the gesture highlights less than a frame after the previous one.
+         */
+        int framesExceeded;
+        private long lastFrameTime = Long.MIN_VALUE / 2;
+        int caretOffset = -1;
+        int highlightedOffset = -1;
+
+        private void highlight(CharSequenceBraceMatcher matcher, CharSequence text) {
+            long start = System.nanoTime();
+            matcher.findLeftLParen(text, caretOffset, false);
+            matcher.findRightRParen(text, caretOffset, false);
+            nanos += System.nanoTime() - start;
+            updates++;
+            highlightedOffset = caretOffset;
+        }
+
+        private void highlightFrame(CharSequenceBraceMatcher matcher, CharSequence text, long time) {
+            if (time - lastFrameTime < FRAME_INTERVAL)
+                framesExceeded++;
+            lastFrameTime = time;
+            highlight(matcher, text);
+        }
+
+        boolean isFinalPositionApplied() {
+            return highlightedOffset == caretOffset;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package io.github.qeesung.highlighter;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.EditorHighlighter;
+import com.intellij.openapi.editor.highlighter.HighlighterIterator;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import io.github.qeesung.adapter.BraceMatchingUtilAdapter;
+import io.github.qeesung.brace.BracePair;
+import io.github.qeesung.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static io.github.qeesung.brace.BraceTokenTypes.DOUBLE_QUOTE;
+import static io.github.qeesung.highlighter.BraceHighlighter.EMPTY_BRACE_PAIR;
+import static io.github.qeesung.highlighter.BraceHighlighter.NON_OFFSET;
+
+/**
+ * Differential fuzz test of the brace highlighters against the reference, the
+ * pair selection before the token snapshot: every brace pair is tried in turn
+ * with the typed walks of {@link BraceMatchingUtilAdapter} on the fresh editor
+ * highlighter iterators, and the string literal at the caret wins if it is
+ * strictly inside the brace pair.
+ * <p>
+ * The random texts have nested, mismatched and unbalanced braces, string literals
+ * with braces inside and multiple lines. The same text is opened as a java file
+ * for the snapshot highlighter and as a plain text file for the character
+ * highlighter, and the pair selected at every random block and line caret is
+ * compared with the reference. The character highlighter is only compared on the
+ * texts the java lexer splits as the character matcher does. The throughput of
+ * every engine is reported by the assertion message.
+ */
+public class BraceMatcherFuzzTest extends LightPlatformCodeInsightFixtureTestCase {
+    private static final long SEED = 162L;
+    private static final int STREAMS = 100;
+    private static final int QUERIES_PER_STREAM = 200;
+    private static final int MAX_TOKENS = 1000;
+    private static final String IDENTIFIER_CHARS = "abcdefgh";
+    private static final String STRING_CHARS = "ab ()[]{}";
+    private static final String BRACES = "()[]{}";
+    private static final int MAX_REPORTED_DIFFERENCES = 10;
+
+    private final List<String> differences = new ArrayList<>();
+    private final long[] engineNanos = new long[3];
+    private long queries;
+    private long characterQueries;
+
+    public void testHighlightersSelectTheReferencePair() {
+        Random random = new Random(SEED);
+        for (int stream = 0; stream < STREAMS; stream++) {
+            long streamSeed = random.nextLong();
+            Random streamRandom = new Random(streamSeed);
+            String text = generate(streamRandom);
+            int[] offsets = new int[QUERIES_PER_STREAM];
+            boolean[] blockCarets = new boolean[QUERIES_PER_STREAM];
+            for (int i = 0; i < QUERIES_PER_STREAM; i++) {
+                offsets[i] = streamRandom.nextInt(text.length() + 1);
+                blockCarets[i] = streamRandom.nextBoolean();
+            }
+
+            myFixture.configureByText("Fuzz.java", text);
+            Editor editor = myFixture.getEditor();
+            BraceHighlighter snapshotHighlighter = BraceHighlighterFactory.getBraceHighlighterInstance(editor);
+            assertInstanceOf(snapshotHighlighter, DefaultBraceHighlighter.class);
+            BracePair[] expected = new BracePair[QUERIES_PER_STREAM];
+            for (int i = 0; i < QUERIES_PER_STREAM; i++) {
+                editor.getSettings().setBlockCursor(blockCarets[i]);
+                long start = System.nanoTime();
+                expected[i] = findReferencePair(editor, snapshotHighlighter.getSupportedBraceToken(),
+                        offsets[i], blockCarets[i]);
+                long middle = System.nanoTime();
+                BracePair actual = snapshotHighlighter.findClosetBracePair(offsets[i]);
+                engineNanos[0] += middle - start;
+                engineNanos[1] += System.nanoTime() - middle;
+                compare("snapshot", streamSeed, text, offsets[i], blockCarets[i],
+                        describe(expected[i], true), describe(actual, true));
+            }
+            queries += QUERIES_PER_STREAM;
+            if (!isCharacterLexing(((EditorEx) editor).getHighlighter().createIterator(0), text))
+                continue;
+
+            myFixture.configureByText("fuzz.txt", text);
+            editor = myFixture.getEditor();
+            BraceHighlighter characterHighlighter = BraceHighlighterFactory.getBraceHighlighterInstance(editor);
+            assertInstanceOf(characterHighlighter, CharacterBraceHighlighter.class);
+            for (int i = 0; i < QUERIES_PER_STREAM; i++) {
+                editor.getSettings().setBlockCursor(blockCarets[i]);
+                long start = System.nanoTime();
+                BracePair actual = characterHighlighter.findClosetBracePair(offsets[i]);
+                engineNanos[2] += System.nanoTime() - start;
+                // the plain brace types differ from the java ones
+                compare("character", streamSeed, text, offsets[i], blockCarets[i],
+                        describe(expected[i], false), describe(actual, false));
+            }
+            characterQueries += QUERIES_PER_STREAM;
+        }
+
+        String report = String.format("Seed %d, %d streams, %d queries per stream, %d character queries, " +
+                        "queries/ms: reference %.1f, snapshot %.1f, character %.1f, %d differences\n%s",
+                SEED, STREAMS, QUERIES_PER_STREAM, characterQueries, throughput(queries, engineNanos[0]),
+                throughput(queries, engineNanos[1]), throughput(characterQueries, engineNanos[2]),
+                differences.size(), String.join("\n",
+                        differences.subList(0, Math.min(differences.size(), MAX_REPORTED_DIFFERENCES))));
+        assertTrue(report, differences.isEmpty());
+        assertTrue(report, characterQueries > 0);
+    }
+
+    /**
+     * Check if the java lexer splits the text as the character matcher does, every
+     * brace token is one brace char, every string literal is quoted on one line, and
+     * no other token has a brace or a quote char.
+     */
+    private static boolean isCharacterLexing(HighlighterIterator iterator, String text) {
+        for (; !iterator.atEnd(); iterator.advance()) {
+            String tokenText = text.substring(iterator.getStart(), iterator.getEnd());
+            if (tokenText.length() == 1 && BRACES.indexOf(tokenText.charAt(0)) >= 0)
+                continue;
+            if (BraceMatchingUtilAdapter.isStringToken(iterator.getTokenType())) {
+                if (tokenText.length() < 2 || tokenText.charAt(0) != '"' ||
+                        tokenText.charAt(tokenText.length() - 1) != '"' || tokenText.indexOf('\n') >= 0 ||
+                        tokenText.indexOf('"', 1) != tokenText.length() - 1)
+                    return false;
+                continue;
+            }
+            for (int i = 0; i < tokenText.length(); i++) {
+                if (BRACES.indexOf(tokenText.charAt(i)) >= 0 || tokenText.charAt(i) == '"')
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the pair around the caret as the brace highlighter did before the token
+     * snapshot, with the fresh editor highlighter iterators at the caret.
+     */
+    private BracePair findReferencePair(Editor editor, List<Pair<IElementType, IElementType>> braceTokens,
+                                        int offset, boolean isBlockCaret) {
+        EditorHighlighter editorHighlighter = ((EditorEx) editor).getHighlighter();
+        CharSequence fileText = editor.getDocument().getImmutableCharSequence();
+        FileType fileType = myFixture.getFile().getFileType();
+
+        BracePair braceTokenBracePair = EMPTY_BRACE_PAIR;
+        for (Pair<IElementType, IElementType> braceTokenPair : braceTokens) {
+            int leftBraceOffset = BraceMatchingUtilAdapter.findLeftLParen(editorHighlighter.createIterator(offset),
+                    braceTokenPair.getLeft(), fileText, fileType, isBlockCaret);
+            int rightBraceOffset = BraceMatchingUtilAdapter.findRightRParen(editorHighlighter.createIterator(offset),
+                    braceTokenPair.getRight(), fileText, fileType, isBlockCaret);
+            if (leftBraceOffset != NON_OFFSET && rightBraceOffset != NON_OFFSET) {
+                braceTokenBracePair = new BracePair.BracePairBuilder().
+                        leftType(braceTokenPair.getLeft()).
+                        rightType(braceTokenPair.getRight()).
+                        leftOffset(leftBraceOffset).
+                        rightOffset(rightBraceOffset).build();
+                break;
+            }
+        }
+
+        BracePair stringSymbolBracePair = EMPTY_BRACE_PAIR;
+        HighlighterIterator iterator = editorHighlighter.createIterator(offset);
+        if (fileText.length() > 0 && BraceMatchingUtilAdapter.isStringToken(iterator.getTokenType()) &&
+                (isBlockCaret || iterator.getStart() != offset)) {
+            stringSymbolBracePair = new BracePair.BracePairBuilder().
+                    leftType(DOUBLE_QUOTE).
+                    rightType(DOUBLE_QUOTE).
+                    leftOffset(iterator.getStart()).
+                    rightOffset(iterator.getEnd() - 1).build();
+        }
+
+        if (offset - braceTokenBracePair.getLeftBrace().getOffset() >
+                offset - stringSymbolBracePair.getLeftBrace().getOffset() &&
+                offset - braceTokenBracePair.getRightBrace().getOffset() <
+                        offset - stringSymbolBracePair.getRightBrace().getOffset())
+            return stringSymbolBracePair;
+        return braceTokenBracePair;
+    }
+
+    /**
+     * Generate the random text, the braces are closed by the matching brace mostly,
+     * and by the mismatched or the unbalanced brace sometimes.
+     */
+    private static String generate(Random random) {
+        StringBuilder text = new StringBuilder();
+        int[] openPairs = new int[MAX_TOKENS];
+        int depth = 0;
+        for (int tokens = 1 + random.nextInt(MAX_TOKENS); tokens > 0; tokens--) {
+            int kind = random.nextInt(100);
+            if (kind < 25) {
+                int pair = random.nextInt(3);
+                openPairs[depth++] = pair;
+                text.append(BRACES.charAt(pair * 2));
+            } else if (kind < 50) {
+                int pair;
+                if (depth > 0 && random.nextInt(10) != 0)
+                    pair = openPairs[--depth];
+                else
+                    pair = random.nextInt(3); // mismatched or unbalanced
+                text.append(BRACES.charAt(pair * 2 + 1));
+            } else if (kind < 60) {
+                text.append('"');
+                for (int length = random.nextInt(6); length > 0; length--)
+                    text.append(STRING_CHARS.charAt(random.nextInt(STRING_CHARS.length())));
+                text.append('"');
+            } else if (kind < 70) {
+                text.append(random.nextBoolean() ? '\n' : ' ');
+            } else {
+                // separated, so that the identifiers are not merged
+                text.append(' ');
+                for (int length = 1 + random.nextInt(4); length > 0; length--)
+                    text.append(IDENTIFIER_CHARS.charAt(random.nextInt(IDENTIFIER_CHARS.length())));
+            }
+        }
+        return text.toString();
+    }
+
+    private void compare(String engine, long streamSeed, String text, int offset, boolean isBlockCaret,
+                         String expected, String actual) {
+        if (expected.equals(actual))
+            return;
+        differences.add(String.format("%s: stream seed %d, offset %d, %s caret, expected %s, actual %s, " +
+                        "text near the caret \"%s\"", engine, streamSeed, offset, isBlockCaret ? "block" : "line",
+                expected, actual, text.substring(Math.max(0, offset - 20), Math.min(text.length(), offset + 20))
+                        .replace("\n", "\\n")));
+    }
+
+    private static String describe(BracePair bracePair, boolean withTypes) {
+        if (bracePair.getLeftBrace().getOffset() == NON_OFFSET || bracePair.getRightBrace().getOffset() == NON_OFFSET)
+            return "none";
+        boolean isString = bracePair.getLeftBrace().getElementType() == DOUBLE_QUOTE;
+        return (withTypes || isString ? bracePair.getLeftBrace().getElementType() + " " : "") +
+                bracePair.getLeftBrace().getOffset() + ".." + bracePair.getRightBrace().getOffset() +
+                (withTypes ? " " + bracePair.getRightBrace().getElementType() : "");
+    }
+
+    private static double throughput(long queries, long nanos) {
+        return nanos == 0 ? 0 : queries * 1e6 / nanos;
+    }
+}